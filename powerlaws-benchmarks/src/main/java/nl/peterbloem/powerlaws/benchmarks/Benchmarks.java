@@ -0,0 +1,70 @@
+package nl.peterbloem.powerlaws.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the regular JMH command line options, but always
+ * with the GC profiler attached, so that the allocation rate (gc.alloc.rate
+ * and gc.alloc.rate.norm, the bytes allocated per operation) is reported for
+ * every benchmark.
+ * 
+ * On Java 16 and later, the forked JVMs are started with the module 
+ * jdk.incubator.vector, so that the library uses its vectorized kernels. 
+ * Append -Dpowerlaws.vector=false to the JVM arguments (with -jvmArgsAppend) 
+ * to measure the scalar kernels instead. Earlier JVMs do not accept the 
+ * option, and always use the scalar kernels.
+ * 
+ * @author Peter
+ */
+public class Benchmarks
+{
+	public static void main(String[] args)
+		throws CommandLineOptionException, RunnerException
+	{
+		CommandLineOptions command = new CommandLineOptions(args);
+		
+		OptionsBuilder builder = new OptionsBuilder();
+		builder.parent(command).addProfiler(GCProfiler.class);
+		
+		if(vectorModule())
+		{
+			// * Setting the arguments here replaces those on the command line,
+			//   so they are added to them
+			List<String> jvmArgs = new ArrayList<String>(
+					command.getJvmArgsAppend().orElse(Collections.<String>emptyList()));
+			jvmArgs.add("--add-modules");
+			jvmArgs.add("jdk.incubator.vector");
+			
+			builder.jvmArgsAppend(jvmArgs.toArray(new String[jvmArgs.size()]));
+		}
+		
+		Options options = builder.build();
+		
+		new Runner(options).run();
+	}
+	
+	/**
+	 * Whether this JVM has the module jdk.incubator.vector (Java 16 and 
+	 * later). The forks run on the same JVM unless -jvm is given.
+	 */
+	private static boolean vectorModule()
+	{
+		String version = System.getProperty("java.specification.version");
+		
+		// * Before Java 9, the version is of the form 1.x
+		if(version.startsWith("1."))
+			return false;
+		
+		return Integer.parseInt(version) >= 16;
+	}
+}
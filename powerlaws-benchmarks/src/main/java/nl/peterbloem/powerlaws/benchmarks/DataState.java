@@ -0,0 +1,61 @@
+package nl.peterbloem.powerlaws.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+
+import nl.peterbloem.powerlaws.Continuous;
+import nl.peterbloem.powerlaws.Discrete;
+import nl.peterbloem.powerlaws.DiscreteApproximate;
+import nl.peterbloem.powerlaws.Histogram;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Generated data, shared by the benchmarks. The data is drawn from a power law 
+ * with the given xMin and exponent, with a fixed seed, so that every run of a 
+ * benchmark sees the same data.
+ * 
+ * @author Peter
+ */
+@State(Scope.Benchmark)
+public class DataState
+{
+	public static final long SEED = 42;
+	
+	@Param({"1000", "10000"})
+	public int size;
+	
+	@Param({"2.0", "2.5", "3.0"})
+	public double exponent;
+	
+	@Param({"1", "10"})
+	public int xMin;
+	
+	public Continuous continuous;
+	public Discrete discrete;
+	public DiscreteApproximate approximate;
+	
+	public List<Double> continuousData;
+	public List<Integer> discreteData;
+	
+	// * The continuous data, already sorted into a histogram
+	public Histogram continuousHistogram;
+	
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		continuous = new Continuous(xMin, exponent);
+		discrete = new Discrete(xMin, exponent);
+		approximate = new DiscreteApproximate(xMin, exponent);
+		
+		Random random = new Random(SEED);
+		continuousData = continuous.generate(size, random);
+		discreteData = discrete.generate(size, random);
+		
+		continuousHistogram = new Histogram(continuousData);
+	}
+}
@@ -0,0 +1,67 @@
+package nl.peterbloem.powerlaws.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import nl.peterbloem.powerlaws.Continuous;
+import nl.peterbloem.powerlaws.Discrete;
+import nl.peterbloem.powerlaws.DiscreteApproximate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Estimating xMin and the exponent, either from all distinct values or from a 
+ * sample of candidates for xMin.
+ * 
+ * @author Peter
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FitBenchmark
+{
+	public static final int SAMPLES = 50;
+	
+	@Benchmark
+	public Continuous continuousFit(DataState state)
+	{
+		return Continuous.fit(state.continuousData).fit();
+	}
+	
+	@Benchmark
+	public Continuous continuousFitSampled(DataState state)
+	{
+		return Continuous.fit(state.continuousData).fitSampled(SAMPLES);
+	}
+	
+	@Benchmark
+	public Discrete discreteFit(DataState state)
+	{
+		return Discrete.fit(state.discreteData).fit();
+	}
+	
+	@Benchmark
+	public Discrete discreteFitSampled(DataState state)
+	{
+		return Discrete.fit(state.discreteData).fitSampled(SAMPLES);
+	}
+	
+	@Benchmark
+	public DiscreteApproximate approximateFit(DataState state)
+	{
+		return DiscreteApproximate.fit(state.discreteData).fit();
+	}
+	
+	@Benchmark
+	public DiscreteApproximate approximateFitSampled(DataState state)
+	{
+		return DiscreteApproximate.fit(state.discreteData).fitSampled(SAMPLES);
+	}
+}
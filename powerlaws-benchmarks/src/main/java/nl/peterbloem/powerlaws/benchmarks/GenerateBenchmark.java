@@ -0,0 +1,68 @@
+package nl.peterbloem.powerlaws.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generating size points from each model, and single draws from the inverse 
+ * cdf of the discrete model.
+ * 
+ * @author Peter
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenerateBenchmark
+{
+	@State(Scope.Thread)
+	public static class RandomState
+	{
+		public Random random;
+		
+		@Setup(Level.Iteration)
+		public void setup()
+		{
+			random = new Random(DataState.SEED);
+		}
+	}
+	
+	@Benchmark
+	public List<Double> continuous(DataState state, RandomState random)
+	{
+		return state.continuous.generate(state.size, random.random);
+	}
+	
+	@Benchmark
+	public List<Integer> discrete(DataState state, RandomState random)
+	{
+		return state.discrete.generate(state.size, random.random);
+	}
+	
+	@Benchmark
+	public List<Integer> approximate(DataState state, RandomState random)
+	{
+		return state.approximate.generate(state.size, random.random);
+	}
+	
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public int discreteCdfInv(DataState state, RandomState random)
+	{
+		return state.discrete.cdfInv(random.random.nextDouble());
+	}
+}
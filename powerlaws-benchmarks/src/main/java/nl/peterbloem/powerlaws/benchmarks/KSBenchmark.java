@@ -0,0 +1,51 @@
+package nl.peterbloem.powerlaws.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The KS test of the generating model against its data. This includes sorting 
+ * the data into a histogram, except for continuousHistogram, which measures
+ * only the kernel that computes the distance (vectorized on Java 16 and later,
+ * see Benchmarks).
+ * 
+ * @author Peter
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KSBenchmark
+{
+	@Benchmark
+	public double continuous(DataState state)
+	{
+		return state.continuous.ksTest(state.continuousData);
+	}
+	
+	@Benchmark
+	public double continuousHistogram(DataState state)
+	{
+		return state.continuous.ksTest(state.continuousHistogram);
+	}
+	
+	@Benchmark
+	public double discrete(DataState state)
+	{
+		return state.discrete.ksTest(state.discreteData);
+	}
+	
+	@Benchmark
+	public double approximate(DataState state)
+	{
+		return state.approximate.ksTest(state.discreteData);
+	}
+}
@@ -0,0 +1,93 @@
+package nl.peterbloem.powerlaws.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import nl.peterbloem.powerlaws.PowerLaws;
+import nl.peterbloem.powerlaws.ZetaCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A scaled-down significance test: TRIALS semi-parametric bootstrap trials, 
+ * each fitted on SAMPLES candidates for xMin. The cost of a full test scales 
+ * linearly in the number of trials.
+ * 
+ * The discrete test is also run with PowerLaws.zetaCache enabled, to check 
+ * that leaving it disabled by default is the faster choice.
+ * 
+ * @author Peter
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class SignificanceBenchmark
+{
+	public static final int TRIALS = 20;
+	public static final int SAMPLES = 20;
+	
+	@Benchmark
+	public double continuous(DataState state)
+	{
+		return state.continuous.significance(
+				state.continuousData, TRIALS, SAMPLES, 
+				PowerLaws.executor, new Random(DataState.SEED));
+	}
+	
+	@Benchmark
+	public double discrete(DataState state)
+	{
+		return state.discrete.significance(
+				state.discreteData, TRIALS, SAMPLES, 
+				PowerLaws.executor, new Random(DataState.SEED));
+	}
+	
+	@Benchmark
+	public double discreteCached(DataState state, CacheState cache)
+	{
+		return discrete(state);
+	}
+	
+	@Benchmark
+	public double approximate(DataState state)
+	{
+		return state.approximate.significance(
+				state.discreteData, TRIALS, SAMPLES, 
+				PowerLaws.executor, new Random(DataState.SEED));
+	}
+	
+	/**
+	 * Enables PowerLaws.zetaCache for the benchmarks that use it.
+	 */
+	@State(Scope.Benchmark)
+	public static class CacheState
+	{
+		private ZetaCache original;
+		
+		@Setup(Level.Trial)
+		public void setup()
+		{
+			original = PowerLaws.zetaCache;
+			PowerLaws.zetaCache = new ZetaCache(1 << 14, ZetaCache.Eviction.LRU);
+		}
+		
+		@TearDown(Level.Trial)
+		public void tearDown()
+		{
+			PowerLaws.zetaCache = original;
+		}
+	}
+}
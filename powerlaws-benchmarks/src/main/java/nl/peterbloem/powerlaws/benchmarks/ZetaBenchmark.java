@@ -0,0 +1,73 @@
+package nl.peterbloem.powerlaws.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import nl.peterbloem.powerlaws.Functions;
+import nl.peterbloem.powerlaws.PowerLaws;
+import nl.peterbloem.powerlaws.ZetaCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The Hurwitz zeta function zeta(exponent, q), with and without 
+ * PowerLaws.zetaCache. Without the cache, q runs over the size values starting 
+ * at xMin, as when a discrete model is fitted to data of that size.
+ * 
+ * @author Peter
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ZetaBenchmark
+{
+	@Param({"1000", "10000"})
+	public int size;
+	
+	@Param({"2.0", "2.5", "3.0"})
+	public double exponent;
+	
+	@Param({"1", "10"})
+	public int xMin;
+	
+	@Param({"true", "false"})
+	public boolean cached;
+	
+	private ZetaCache original;
+	private int q;
+	
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		original = PowerLaws.zetaCache;
+		PowerLaws.zetaCache = cached ? new ZetaCache(1 << 14, ZetaCache.Eviction.LRU) : null;
+		q = 0;
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		PowerLaws.zetaCache = original;
+	}
+	
+	@Benchmark
+	public double zeta()
+	{
+		q = (q + 1) % size;
+		return Functions.zeta(exponent, xMin + q);
+	}
+}
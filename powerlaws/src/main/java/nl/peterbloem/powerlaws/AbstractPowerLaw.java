@@ -6,18 +6,42 @@ import static nl.peterbloem.util.Series.series;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.DoubleStream;
 
 import nl.peterbloem.util.AbstractGenerator;
 import nl.peterbloem.util.NumberComparator;
 import nl.peterbloem.util.Series;
+import nl.peterbloem.util.SplitRandom;
 
 public abstract class AbstractPowerLaw<T extends Number> 
 	extends AbstractGenerator<T>
 	implements PowerLaw<T>
 {
 
+	/**
+	 * The number of trials after which the sequential significance test checks
+	 * whether it can stop. 
+	 */
+	public static final int SEQUENTIAL_BATCH = 64;
+	
+	/**
+	 * The default confidence for the sequential significance test.
+	 */
+	public static final double SEQUENTIAL_CONFIDENCE = 0.99;
+
 	private double exponent;
 	private T xMin;
 	
@@ -27,9 +51,6 @@ public abstract class AbstractPowerLaw<T extends Number>
 		this.xMin = xMin;
 	}
 	
-	@Override
-	public abstract T generate();
-
 	@Override
 	public double exponent()
 	{
@@ -64,70 +85,507 @@ public abstract class AbstractPowerLaw<T extends Number>
 		return n;
 	}
 
+	@Override
+	public T generate()
+	{
+		return generate(PowerLaws.random);
+	}
+	
+	@Override
+	public abstract T generate(Random random);
+
 	@Override
 	public List<T> generate(Collection<? extends T> observed, int number)
 	{
-		int n = observed.size();
-		List<T> head = new ArrayList<T>(observed.size());
+		return generate(observed, number, PowerLaws.random);
+	}
+	
+	@Override
+	public List<T> generate(Collection<? extends T> observed, int number, Random random)
+	{
+		return generate(head(observed), observed.size(), number, random);
+	}
+	
+	/**
+	 * The points of the observed data below xMin.
+	 */
+	private List<T> head(Collection<? extends T> observed)
+	{
+		List<T> head = new ArrayList<T>();
 		for(T datum : observed)
 			if(datum.doubleValue() < xMin.doubleValue())
 				head.add(datum);
 		
+		return head;
+	}
+	
+	/**
+	 * Generates data like observed data of size n with the given head.
+	 */
+	private List<T> generate(List<T> head, int n, int number, Random random)
+	{
+		double fromHead = head.size() / (double) n;
+		
 		List<T> result = new ArrayList<T>(number);
-		for(int i : Series.series(number))
-			if(PowerLaws.random.nextDouble() < head.size() / (double)n)
-				result.add(head.get(PowerLaws.random.nextInt(head.size())));
+		for(int i = 0; i < number; i++)
+			if(random.nextDouble() < fromHead)
+				result.add(head.get(random.nextInt(head.size())));
 			else 
-				result.add(generate());
+				result.add(generate(random));
 		
 		return result;
-	}	
+	}
+	
+	/**
+	 * Transforms a uniform random number in [0, 1) into a draw from this 
+	 * distribution, by inverting its cdf. Unless a subclass has a faster 
+	 * method, all generation methods use this transform, so they draw the 
+	 * same values from the same random numbers. 
+	 * 
+	 * @param uniform
+	 * @return
+	 */
+	public abstract double fromUniform(double uniform);
+	
+	/**
+	 * Draws a single value from this distribution, without boxing it. By 
+	 * default, this transforms a single uniform random number.
+	 * 
+	 * @param random
+	 * @return
+	 */
+	protected double draw(Random random)
+	{
+		return fromUniform(random.nextDouble());
+	}
+	
+	@Override
+	public void generate(double[] target, Random random)
+	{
+		generate(target, 0, target.length, random);
+	}
+	
+	@Override
+	public void generate(double[] target, int from, int to, Random random)
+	{
+		for(int i = from; i < to; i++)
+			target[i] = draw(random);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The uniform random numbers come from SplitRandom.doubles(), seeded by the
+	 * given random. Run in parallel, the stream produces the same values (in 
+	 * the same order) as run sequentially.
+	 */
+	@Override
+	public DoubleStream doubles(long number, Random random)
+	{
+		return SplitRandom.of(random).doubles(number).map(new DoubleUnaryOperator()
+		{
+			@Override
+			public double applyAsDouble(double uniform)
+			{
+				return fromUniform(uniform);
+			}
+		});
+	}
 
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The number of points drawn from the head is binomially distributed. The
+	 * head is resampled and the tail generated directly as histograms, by 
+	 * resample(...) and generateHistogram(...).
+	 */
 	@Override
-	public double ksTest(Collection<? extends T> data)
+	public Histogram generate(Histogram observed, Random random)
 	{
-		List<T> copy = new ArrayList<T>(data.size());
-		for(T datum : data)
-			if(datum.doubleValue() >= xMin.doubleValue())
-				copy.add(datum);
+		return generate(observed, random, new Scratch()).trimmed();
+	}
+	
+	/**
+	 * Generates data like the observed data as generate(Histogram, Random) 
+	 * does, using the buffers of the given scratch space. The result is one of
+	 * these buffers, and is overwritten by the next call with the same scratch
+	 * space.
+	 */
+	protected Histogram generate(Histogram observed, Random random, Scratch scratch)
+	{
+		int from = observed.tailStart(xMin.doubleValue());
+		long n = observed.total(), head = n - observed.tailSize(from);
 		
-		Collections.sort(copy, new NumberComparator());
+		long fromHead = Functions.binomial(n, head / (double) n, random);
 		
-		double max = Double.NEGATIVE_INFINITY;
+		Histogram generated = generateHistogram(n - fromHead, random);
+		if(fromHead > 0)
+			generated = observed
+					.resample(fromHead, 0, from, random, scratch.counts(from), scratch.head)
+					.merge(generated, scratch.merged);
 		
-		for(int i : Series.series(copy.size()))
+		return generated;
+	}
+	
+	/**
+	 * The buffers into which a thread generates the datasets of its 
+	 * significance trials. They are reused for every trial the thread runs, 
+	 * and grow as needed.
+	 */
+	static class Scratch
+	{
+		private long[] counts = new long[0];
+		private double[] points = new double[0];
+		
+		/**
+		 * The resampled head of a dataset, and the whole dataset.
+		 */
+		final Histogram head = new Histogram(0), merged = new Histogram(0);
+		
+		/**
+		 * A buffer for the counts of at least the given number of values.
+		 */
+		long[] counts(int size)
 		{
-			T x = copy.get(i);
+			if(counts.length < size)
+				counts = new long[size];
 			
-			double dataCDF = (i + (KS_CORRECT ? 1 : 0)) / (double) copy.size();
-			double plCDF = cdf(x);
+			return counts;
+		}
+		
+		/**
+		 * A buffer for at least the given number of points.
+		 */
+		double[] points(int size)
+		{
+			if(points.length < size)
+				points = new double[size];
 			
-			double diff = Math.abs(dataCDF - plCDF);
-			max = Math.max(diff, max);
+			return points;
 		}
+	}
+	
+	/**
+	 * Generates the given number of points from this distribution, as a 
+	 * histogram. This implementation generates the points one by one and 
+	 * sorts them. Discrete distributions override it to draw the counts of 
+	 * the values directly, so that the time taken depends on the number of 
+	 * distinct values generated rather than the number of points. The 
+	 * continuous distribution generates its points in ascending order.
+	 * 
+	 * @param number
+	 * @param random
+	 * @return
+	 */
+	protected Histogram generateHistogram(long number, Random random)
+	{
+		if(number > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Cannot generate "+number+" points one by one.");
+		
+		double[] points = new double[(int) number];
+		for(int i = 0; i < points.length; i++)
+			points[i] = generate(random).doubleValue();
 		
-		return max;
+		return new Histogram(points);
+	}
+
+	@Override
+	public double ksTest(Collection<? extends T> data)
+	{
+		return ksTest(new Histogram(data));
+	}
+	
+	@Override
+	public double ksTest(Histogram data)
+	{
+		return ksTest(data, data.tailStart(xMin.doubleValue()));
 	}
 	
 	@Override
 	public double significance(Collection<? extends T> data, int n, int dataSamples)
 	{
-		double threshold = ksTest(data);
+		return significance(data, n, dataSamples, PowerLaws.executor);
+	}
+	
+	@Override
+	public double significance(
+			Collection<? extends T> data, int n, int dataSamples, 
+			ExecutorService executor)
+	{
+		return significance(data, n, dataSamples, executor, PowerLaws.random);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Each trial draws from its own child stream, split from a SplitRandom in 
+	 * the order of the trials. The result therefore depends only on the state
+	 * of the given random, and not on the number of threads used or the order 
+	 * in which the trials are executed.
+	 */
+	@Override
+	public double significance(
+			final Collection<? extends T> data, final int n, final int dataSamples, 
+			ExecutorService executor, Random random)
+	{
+		return significance(new Histogram(data), n, dataSamples, executor, random);
+	}
+	
+	@Override
+	public Significance sequentialSignificance(Collection<? extends T> data, double threshold, double epsilon)
+	{
+		return sequentialSignificance(
+				data, threshold, SEQUENTIAL_CONFIDENCE, (int)(0.25 * Math.pow(epsilon, -2.0)), -1, 
+				PowerLaws.executor, PowerLaws.random);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The trials are run in batches of SEQUENTIAL_BATCH. The decision is 
+	 * checked after each batch, so that there are at most 
+	 * k = ceil(maxTrials / SEQUENTIAL_BATCH) checks. To keep the probability 
+	 * of a wrong decision over all checks below 1 - confidence, each check 
+	 * uses a Wilson score interval with confidence 1 - (1 - confidence) / k.
+	 * 
+	 * The trials draw from the same streams as those of 
+	 * significance(data, n, dataSamples, executor, random), so the result
+	 * does not depend on the executor.
+	 */
+	@Override
+	public Significance sequentialSignificance(
+			Collection<? extends T> data, double threshold, double confidence,
+			int maxTrials, int dataSamples, ExecutorService executor, Random random)
+	{
+		if(maxTrials < 1)
+			throw new IllegalArgumentException("The maximum number of trials ("+maxTrials+") should be positive.");
 		
-		int above = 0;
-		for(int i : Series.series(n))
+		Histogram histogram = new Histogram(data);
+		double distance = ksTest(histogram);
+		SplitRandom root = SplitRandom.of(random);
+		
+		int checks = (maxTrials + SEQUENTIAL_BATCH - 1) / SEQUENTIAL_BATCH;
+		double z = Functions.normalQuantile(1.0 - (1.0 - confidence) / (2.0 * checks));
+		
+		Progress progress = Progress.start(ProgressListener.Job.SIGNIFICANCE, maxTrials);
+		
+		int above = 0, trials = 0;
+		double[] interval = null;
+		while(trials < maxTrials)
 		{
-			if(i % 1 == 0 && i != 0)
-				Functions.log().info("* finished " + i + " trials of "+n+".");
+			int batch = Math.min(SEQUENTIAL_BATCH, maxTrials - trials);
+			List<Random> randoms = new ArrayList<Random>(batch);
+			for(int i : Series.series(batch))
+				randoms.add(root.split());
+			
+			above += trials(trial(histogram, dataSamples, distance), randoms, trials, progress, executor);
+			trials += batch;
 			
-			List<T> generated = generate(data, data.size());
+			interval = Functions.wilson(above, trials, z);
+			if(interval[0] > threshold || interval[1] < threshold)
+				break;
+		}
+		
+		if(progress != null)
+			progress.finished();
+		
+		return new Significance(above, trials, interval[0], interval[1]);
+	}
+	
+	@Override
+	public SignificanceFuture significanceAsync(Collection<? extends T> data, int n)
+	{
+		return significanceAsync(
+				data, n, -1, -1, TimeUnit.NANOSECONDS, 
+				PowerLaws.executor, PowerLaws.random);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Each trial is submitted to the executor as a separate task, which checks
+	 * before it starts whether the test has been cancelled or its deadline has
+	 * passed. If the executor rejects a task, that trial and the remaining 
+	 * ones are skipped, as after the deadline, so that the future still 
+	 * completes with the trials that were accepted.
+	 */
+	@Override
+	public SignificanceFuture significanceAsync(
+			final Collection<? extends T> data, int n, final int dataSamples, 
+			long timeout, TimeUnit unit, ExecutorService executor, Random random)
+	{
+		final Histogram histogram = new Histogram(data);
+		final Trial trial = trial(histogram, dataSamples, ksTest(histogram));
+		SplitRandom root = SplitRandom.of(random);
 		
-			PowerLaw<T> generatedPL = fitInternal(generated, dataSamples);
+		final Progress progress = Progress.start(ProgressListener.Job.SIGNIFICANCE, n);
+		final SignificanceFuture future = new SignificanceFuture(
+				n, timeout < 0 ? -1 : unit.toNanos(timeout), progress);
+		
+		for(final int index : Series.series(n))
+		{
+			final Random trialRandom = root.split();
 			
-			if(generatedPL.ksTest(generated) >= threshold)
-				above ++;
+			Runnable task = new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					try 
+					{
+						if(future.proceed())
+							future.trial(trial.run(trialRandom, index, progress));
+					} catch(RuntimeException e)
+					{
+						future.failed(e);
+					} finally
+					{
+						future.ended();
+					}
+				}
+			};
+			
+			try
+			{
+				executor.execute(task);
+			} catch(RejectedExecutionException e)
+			{
+				// * The executor is shut down or full: this trial and those 
+				//   not yet submitted are skipped
+				future.skipped(n - index);
+				break;
+			}
+		}
+		
+		return future;
+	}
+	
+	/**
+	 * A single trial of a significance test.
+	 */
+	private static interface Trial
+	{
+		/**
+		 * @return Whether the KS distance of the trial was at least the 
+		 * 	threshold.
+		 */
+		public boolean run(Random random, int index, Progress progress);
+	}
+	
+	/**
+	 * The trials of a single run. Each thread generates its datasets into its
+	 * own scratch space.
+	 */
+	private Trial trial(
+			final Histogram data, final int dataSamples, final double threshold)
+	{
+		final ThreadLocal<Scratch> scratches = new ThreadLocal<Scratch>()
+		{
+			@Override
+			protected Scratch initialValue()
+			{
+				return new Scratch();
+			}
+		};
+		
+		return new Trial()
+		{
+			@Override
+			public boolean run(Random random, int index, Progress progress)
+			{
+				return trial(data, dataSamples, threshold, scratches.get(), random, index, progress);
+			}
+		};
+	}
+	
+	/**
+	 * Runs one trial of the significance test for each random and returns 
+	 * the number of trials whose KS distance was at least the threshold.
+	 * 
+	 * @param offset The index of the first trial within the run, for progress 
+	 * 	reports.
+	 * @param progress The progress of the run, or null if nobody is listening.
+	 */
+	private int trials(
+			final Trial trial, List<Random> randoms, int offset,
+			final Progress progress, ExecutorService executor)
+	{
+		List<Callable<Boolean>> trials = new ArrayList<Callable<Boolean>>(randoms.size());
+		for(int i : Series.series(randoms.size()))
+		{
+			final Random trialRandom = randoms.get(i);
+			final int index = offset + i;
+			
+			trials.add(new Callable<Boolean>() 
+			{
+				@Override
+				public Boolean call()
+				{
+					return trial.run(trialRandom, index, progress);
+				}
+			});
 		}
 		
+		int above = 0;
+		for(boolean result : Functions.invokeAll(executor, trials))
+			if(result)
+				above ++;
+		
+		return above;
+	}
+	
+	/**
+	 * A single trial of the significance test: generate a dataset like the 
+	 * data, fit a model to it and check whether the KS distance is at least as 
+	 * great as the threshold. 
+	 * 
+	 * The dataset is generated as a histogram, with the head resampled and the
+	 * tail generated in order (see generate(Histogram, Random)), so it is 
+	 * never sorted. It is generated into the scratch space of the thread, and 
+	 * the same histogram is used to fit and to compute the KS distance.
+	 */
+	private boolean trial(
+			Histogram data, int dataSamples, double threshold, Scratch scratch,
+			Random random, int index, Progress progress)
+	{
+		long start = progress == null ? 0 : System.nanoTime();
+		
+		Histogram generated = generate(data, random, scratch);
+		
+		PowerLaw<T> generatedPL = fitInternal(generated, dataSamples);
+		double distance = generatedPL.ksTest(generated);
+		
+		if(progress != null)
+			progress.trial(index, distance, generatedPL, System.nanoTime() - start);
+		
+		return distance >= threshold;
+	}
+	
+	@Override
+	public double significance(Histogram data, int n)
+	{
+		return significance(data, n, -1, PowerLaws.executor, PowerLaws.random);
+	}
+	
+	@Override
+	public double significance(
+			final Histogram data, int n, final int dataSamples, 
+			ExecutorService executor, Random random)
+	{
+		final double threshold = ksTest(data);
+		SplitRandom root = SplitRandom.of(random);
+		
+		List<Random> randoms = new ArrayList<Random>(n);
+		for(int i : Series.series(n))
+			randoms.add(root.split());
+		
+		Progress progress = Progress.start(ProgressListener.Job.SIGNIFICANCE, n);
+		
+		int above = trials(trial(data, dataSamples, threshold), randoms, 0, progress, executor);
+		
+		if(progress != null)
+			progress.finished();
+		
 		return above / (double) n;
 	}
 
@@ -140,10 +598,166 @@ public abstract class AbstractPowerLaw<T extends Number>
 	 */
 	protected abstract PowerLaw<T> fitInternal(Collection<? extends T> data, int dataSamples);
 	
+	/**
+	 * Fit a power law to a histogram of data in the same way this model might 
+	 * be created. 
+	 * 
+	 * @param data
+	 * @return
+	 */
+	protected abstract PowerLaw<T> fitInternal(Histogram data, int dataSamples);
+	
+	@Override
+	public Uncertainties uncertainties(Collection<? extends T> data, int bootstrapSize)
+	{
+		return uncertainties(data, bootstrapSize, -1, PowerLaws.executor);
+	}
+	
+	@Override
+	public Uncertainties uncertainties(
+			Collection<? extends T> data, int bootstrapSize, int dataSamples, 
+			ExecutorService executor)
+	{
+		return uncertainties(data, bootstrapSize, dataSamples, executor, PowerLaws.random);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * The data is sorted into a histogram once. Each replicate then draws the 
+	 * multiplicities of the distinct values from a multinomial distribution, 
+	 * which is the distribution of the counts in a sample with replacement, 
+	 * and is fitted directly on these counts. See 
+	 * uncertainties(Histogram, ...).
+	 */
+	@Override
+	public Uncertainties uncertainties(
+			Collection<? extends T> data, int bootstrapSize, int dataSamples, 
+			ExecutorService executor, Random random)
+	{
+		return uncertainties(new Histogram(data), bootstrapSize, dataSamples, executor, random);
+	}
+	
+	@Override
+	public Uncertainties uncertainties(Histogram data, int bootstrapSize)
+	{
+		return uncertainties(data, bootstrapSize, -1, PowerLaws.executor, PowerLaws.random);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Each replicate is drawn as a histogram by Histogram.resample(...): the 
+	 * multiplicities of the distinct values are drawn from a multinomial 
+	 * distribution, and the distinct values are already in order. The 
+	 * maximum likelihood estimates and KS distances are computed from the 
+	 * weighted values, so a replicate takes time linear in the number of 
+	 * distinct values, rather than O(n log n) in the number of points, and 
+	 * the data is never sorted or copied.
+	 */
+	@Override
+	public Uncertainties uncertainties(
+			final Histogram data, int bootstrapSize, final int dataSamples, 
+			ExecutorService executor, Random random)
+	{
+		return bootstrap(data, bootstrapSize, executor, random, new Function<Histogram, PowerLaw<T>>()
+		{
+			@Override
+			public PowerLaw<T> apply(Histogram resampled)
+			{
+				return fitInternal(resampled, dataSamples);
+			}
+		});
+	}
+	
+	/**
+	 * Estimates the uncertainties by bootstrapping, fitting each replicate 
+	 * with the given function. This does not depend on a model, so the static
+	 * uncertainties(...) methods of the subclasses use it directly.
+	 * 
+	 * @param data
+	 * @param bootstrapSize
+	 * @param executor
+	 * @param random
+	 * @param fit Fits a model to a replicate.
+	 * @return
+	 */
+	static <T extends Number> Uncertainties bootstrap(
+			final Histogram data, int bootstrapSize, ExecutorService executor, 
+			Random random, final Function<Histogram, PowerLaw<T>> fit)
+	{
+		SplitRandom root = SplitRandom.of(random);
+		
+		final double[] exponents = new double[bootstrapSize], 
+		               xMins = new double[bootstrapSize], 
+		               nTails = new double[bootstrapSize];
+		
+		final Progress progress = Progress.start(ProgressListener.Job.UNCERTAINTIES, bootstrapSize);
+		
+		// * The multiplicities are drawn into a buffer per thread
+		final ThreadLocal<long[]> buffers = new ThreadLocal<long[]>()
+		{
+			@Override
+			protected long[] initialValue()
+			{
+				return new long[data.size()];
+			}
+		};
+		
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(bootstrapSize);
+		for(final int replicate : Series.series(bootstrapSize))
+		{
+			final Random replicateRandom = root.split();
+			
+			tasks.add(new Callable<Void>()
+			{
+				@Override
+				public Void call()
+				{
+					long start = progress == null ? 0 : System.nanoTime();
+					
+					Histogram resampled = data.resample(
+							data.total(), 0, data.size(), replicateRandom, buffers.get());
+					PowerLaw<T> model = fit.apply(resampled);
+					
+					double xMin = model.xMin().doubleValue();
+					exponents[replicate] = model.exponent();
+					xMins[replicate] = xMin;
+					nTails[replicate] = data.tailSize(data.tailStart(xMin));
+					
+					if(progress != null)
+						progress.trial(
+								replicate, model.ksTest(resampled), model, 
+								System.nanoTime() - start);
+					
+					return null;
+				}
+			});
+		}
+		
+		Functions.invokeAll(executor, tasks);
+		
+		if(progress != null)
+			progress.finished();
+		
+		return new Uncertainties(
+				Functions.standardDeviation(exponents), 
+				Functions.standardDeviation(xMins), 
+				Functions.standardDeviation(nTails));
+	}
+	
 	@Override
 	public double significance(Collection<? extends T> data, double epsilon, int dataSamples)
 	{
-		return significance(data, (int)(0.25 * Math.pow(epsilon, -2.0)), dataSamples);
+		return significance(data, epsilon, dataSamples, PowerLaws.executor);
+	}
+	
+	@Override
+	public double significance(
+			Collection<? extends T> data, double epsilon, int dataSamples, 
+			ExecutorService executor)
+	{
+		return significance(data, (int)(0.25 * Math.pow(epsilon, -2.0)), dataSamples, executor);
 	}
 	
 	public double significance(Collection<? extends T> data, double epsilon)
@@ -160,20 +774,55 @@ public abstract class AbstractPowerLaw<T extends Number>
 		implements Fit<T, P>
 	{
 
-		private List<T> data;
-		private List<T> unique;
+		/**
+		 * The default size of the initial grid of the adaptive search.
+		 */
+		public static final int ADAPTIVE_GRID = 64;
+		
+		/**
+		 * The number of candidates evaluated on either side of each of the 
+		 * best candidates, per round of the adaptive search.
+		 */
+		private static final int ADAPTIVE_REFINE = 6;
+		
+		/**
+		 * The number of best candidates refined in each round of the adaptive
+		 * search.
+		 */
+		private static final int ADAPTIVE_LEADERS = 3;
+		
+		private List<T> data = null;
+		private List<T> unique = null;
+		private Histogram histogram;
+		
+		/**
+		 * The number of candidates evaluated by the last search.
+		 */
+		protected int evaluated = 0;
 
 		public AbstractFit(Collection<? extends T> data)
 		{
-			this.data = new ArrayList<T>(data);
-			Collections.sort(this.data, new NumberComparator());
-			
-			LinkedHashSet<T> set = new LinkedHashSet<T>(data);
-			unique = new ArrayList<T>(set);
-			
-			Collections.sort(unique, new NumberComparator());
+			this(new Histogram(data));
 		}
 		
+		/**
+		 * Creates a fit directly from a histogram of the data. 
+		 * 
+		 * @param histogram
+		 */
+		public AbstractFit(Histogram histogram)
+		{
+			this.histogram = histogram;
+		}
+		
+		/**
+		 * Converts a value from the histogram to the type of the data.
+		 * 
+		 * @param value
+		 * @return
+		 */
+		protected abstract T box(double value);
+		
 		@Override
 		public P fit()
 		{
@@ -186,19 +835,18 @@ public abstract class AbstractPowerLaw<T extends Number>
 			P best = null;
 			double bestDistance = Double.POSITIVE_INFINITY;
 			
-			int step;
-			if(samples == unique.size() || samples == -1)
-				step = 1;
-			else
-				step = (int)Math.floor(unique.size()/(double)samples);
+			int step = step(samples);
+			evaluated = 0;
 			
 			int i = 0;
-			while(i < unique.size())
+			while(i < histogram.size())
 			{
-				T datum = unique.get(i);
+				T datum = box(histogram.value(i));
 				
+				// * The tail of the candidate starts at the i-th distinct value
 				P current = fit(datum);
-				double currentDistance = current.ksTest(data);
+				double currentDistance = current.ksTest(histogram, i);
+				evaluated++;
 				
 				if(currentDistance < bestDistance)
 				{
@@ -211,16 +859,204 @@ public abstract class AbstractPowerLaw<T extends Number>
 
 			return best;
 		}
+		
+		@Override
+		public P fitAdaptive()
+		{
+			return fitAdaptive(ADAPTIVE_GRID, 0.0);
+		}
+		
+		@Override
+		public P fitAdaptive(int grid, double tolerance)
+		{
+			int m = histogram.size();
+			if(m == 0)
+				throw new IllegalStateException("Cannot fit a power law to empty data.");
+			
+			Search search = new Search();
+			evaluated = 0;
+			
+			// * The coarse grid: half evenly spaced over the distinct values, 
+			//   half evenly spaced over the logarithms of the (positive) values, 
+			//   so that the sparse tail is covered as well as the dense body.
+			int half = Math.max(1, grid / 2);
+			for(int j = 0; j < half; j++)
+				search.evaluate((int)((long) j * m / half));
+			
+			int firstPositive = histogram.tailStart(Double.MIN_VALUE);
+			if(firstPositive < m)
+			{
+				double lower = Math.log(histogram.value(firstPositive)), 
+				       upper = Math.log(histogram.value(m - 1));
+				
+				for(int j = 0; j < half; j++)
+					search.evaluate(histogram.tailStart(Math.exp(lower + (upper - lower) * j / half)));
+			}
+			search.evaluate(m - 1);
+			
+			// * Refine between the best candidates and their evaluated neighbors
+			while(true)
+			{
+				double before = search.bestDistance;
+				boolean refined = false;
+				
+				for(int leader : search.leaders())
+				{
+					Integer left = search.indices.lower(leader), 
+					        right = search.indices.higher(leader);
+					
+					refined |= search.between(left == null ? -1 : left, leader);
+					refined |= search.between(leader, right == null ? m : right);
+				}
+				
+				if(! refined || before - search.bestDistance < tolerance)
+					break;
+			}
+			
+			return search.best;
+		}
+		
+		@Override
+		public int evaluated()
+		{
+			return evaluated;
+		}
+		
+		/**
+		 * The state of an adaptive search: the candidates evaluated so far 
+		 * (by their index in the histogram) and their KS distances.
+		 */
+		private class Search
+		{
+			TreeSet<Integer> indices = new TreeSet<Integer>();
+			Map<Integer, Double> distances = new HashMap<Integer, Double>();
+			
+			P best = null;
+			double bestDistance = Double.POSITIVE_INFINITY;
+			
+			public boolean evaluate(int i)
+			{
+				if(i < 0 || i >= histogram.size() || indices.contains(i))
+					return false;
+				
+				P current = fit(box(histogram.value(i)));
+				double distance = current.ksTest(histogram, i);
+				evaluated++;
+				
+				indices.add(i);
+				distances.put(i, distance);
+				
+				if(distance < bestDistance)
+				{
+					bestDistance = distance;
+					best = current;
+				}
+				
+				return true;
+			}
+			
+			/**
+			 * Evaluates up to ADAPTIVE_REFINE evenly spaced candidates strictly 
+			 * between the two indices. Returns false if there were none left.
+			 */
+			public boolean between(int left, int right)
+			{
+				boolean any = false;
+				for(int s = 1; s <= ADAPTIVE_REFINE; s++)
+					any |= evaluate(left + (int)((long)(right - left) * s / (ADAPTIVE_REFINE + 1)));
+				
+				// * Close gaps too small to be hit by the evenly spaced points
+				if(! any && right - left > 1)
+					any = evaluate(left + 1);
+				
+				return any;
+			}
+			
+			/**
+			 * The indices of the best candidates so far.
+			 */
+			public List<Integer> leaders()
+			{
+				List<Integer> leaders = new ArrayList<Integer>(indices);
+				Collections.sort(leaders, new Comparator<Integer>()
+				{
+					@Override
+					public int compare(Integer first, Integer second)
+					{
+						return Double.compare(distances.get(first), distances.get(second));
+					}
+				});
+				
+				return leaders.subList(0, Math.min(ADAPTIVE_LEADERS, leaders.size()));
+			}
+		}
+		
+		/**
+		 * The distance between the indices of successive candidates for xMin 
+		 * in unique() when approximately the given number of samples is 
+		 * requested.
+		 * 
+		 * @param samples The number of samples, or -1 for all unique values.
+		 * @return
+		 */
+		protected int step(int samples)
+		{
+			if(samples == histogram.size() || samples == -1)
+				return 1;
+			
+			return Math.max(1, (int)Math.floor(histogram.size()/(double)samples));
+		}
 
+		/**
+		 * The data in ascending order. The list is created from the histogram 
+		 * when first requested.
+		 * 
+		 * @return
+		 */
 		public List<T> data()
 		{
+			if(data == null)
+			{
+				data = new ArrayList<T>((int) histogram.total());
+				for(int i : series(histogram.size()))
+				{
+					T value = box(histogram.value(i));
+					for(long j = 0; j < histogram.count(i); j++)
+						data.add(value);
+				}
+			}
+			
 			return data;
 		}
 
+		/**
+		 * The distinct values in the data, in ascending order. The list is 
+		 * created from the histogram when first requested.
+		 * 
+		 * @return
+		 */
 		public List<T> unique()
 		{
+			if(unique == null)
+			{
+				unique = new ArrayList<T>(histogram.size());
+				for(int i : series(histogram.size()))
+					unique.add(box(histogram.value(i)));
+			}
+			
 			return unique;
 		}
 
+		/**
+		 * The data as a sorted histogram with precomputed tail sizes and 
+		 * tail log-sums.
+		 * 
+		 * @return
+		 */
+		public Histogram histogram()
+		{
+			return histogram;
+		}
+
 	}
 }
@@ -1,6 +1,5 @@
 package nl.peterbloem.powerlaws;
 
-import static nl.peterbloem.powerlaws.PowerLaws.KS_CORRECT;
 import static nl.peterbloem.util.Series.series;
 
 import java.util.ArrayList;
@@ -8,7 +7,9 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.function.Function;
 
 import nl.peterbloem.util.AbstractGenerator;
 import nl.peterbloem.util.Generator;
@@ -23,12 +24,85 @@ public class Continuous extends AbstractPowerLaw<Double>
 	}
 
 	@Override
-	public Double generate()
+	public Double generate(Random random)
+	{
+		return fromUniform(random.nextDouble());
+	}
+	
+	@Override
+	public double fromUniform(double uniform)
 	{
-		double source = PowerLaws.random.nextDouble();
-		
 		double p = - 1.0 / (exponent() - 1.0);
-		return xMin() * Math.pow(1.0 - source, p);
+		return xMin() * Math.pow(1.0 - uniform, p);
+	}
+	
+	@Override
+	public void generate(double[] target, int from, int to, Random random)
+	{
+		double xMin = xMin(), p = - 1.0 / (exponent() - 1.0);
+		
+		for(int i = from; i < to; i++)
+			target[i] = xMin * Math.pow(1.0 - random.nextDouble(), p);
+	}
+	
+	/**
+	 * The tail is generated in ascending order, into the points buffer of the
+	 * scratch space, and merged directly into the resampled head. This draws 
+	 * the same random numbers, and gives the same result, as the general 
+	 * method.
+	 */
+	@Override
+	protected Histogram generate(Histogram observed, Random random, Scratch scratch)
+	{
+		int from = observed.tailStart(xMin());
+		long n = observed.total(), head = n - observed.tailSize(from);
+		
+		long fromHead = Functions.binomial(n, head / (double) n, random);
+		
+		int number = checkNumber(n - fromHead);
+		double[] tail = scratch.points(number);
+		generateSorted(tail, number, random);
+		
+		Histogram generated = observed.resample(
+				fromHead, 0, from, random, scratch.counts(from), scratch.head);
+		return generated.merge(tail, number, scratch.merged);
+	}
+	
+	@Override
+	protected Histogram generateHistogram(long number, Random random)
+	{
+		double[] points = new double[checkNumber(number)];
+		generateSorted(points, points.length, random);
+		
+		return new Histogram(points, true);
+	}
+	
+	private static int checkNumber(long number)
+	{
+		if(number > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Cannot generate "+number+" points one by one.");
+		
+		return (int) number;
+	}
+	
+	/**
+	 * Generates the given number of points into the start of the array, in 
+	 * ascending order, in linear time, so that they need not be sorted. For a 
+	 * point x, E = (exponent - 1) log(x / xMin) is exponentially distributed, 
+	 * and the order statistics of n exponential draws are partial sums of 
+	 * independent exponential spacings: the k-th smallest is the sum of 
+	 * Z_j / (n - j) for j < k (Renyi 1953). 
+	 */
+	private void generateSorted(double[] points, int number, Random random)
+	{
+		double xMin = xMin(), scale = 1.0 / (exponent() - 1.0);
+		
+		double sum = 0.0;
+		for(int i = 0; i < number; i++)
+		{
+			sum += - Math.log(1.0 - random.nextDouble()) / (number - i);
+			points[i] = xMin * Math.exp(sum * scale);
+		}
 	}
 	
 	public static PowerLaw.Fit<Double, Continuous> fit(Collection<? extends Double> data)
@@ -36,6 +110,17 @@ public class Continuous extends AbstractPowerLaw<Double>
 		return new Fit(data);
 	}
 	
+	/**
+	 * Fits a power law to data given as a histogram. 
+	 * 
+	 * @param data
+	 * @return
+	 */
+	public static PowerLaw.Fit<Double, Continuous> fit(Histogram data)
+	{
+		return new Fit(data);
+	}
+	
 	/**
 	 * Returns the probability density of x
 	 * 
@@ -71,11 +156,23 @@ public class Continuous extends AbstractPowerLaw<Double>
 	
 	
 	
+	@Override
+	public double ksTest(Histogram data, int from)
+	{
+		return Kernels.INSTANCE.ks(data.values(), data.tails(), from, data.size(), xMin(), exponent());
+	}
+	
 	@Override
 	protected PowerLaw<Double> fitInternal(Collection<? extends Double> data, int dataSamples)
 	{
 		return Continuous.fit(data).fitSampled(dataSamples);
 	}
+	
+	@Override
+	protected PowerLaw<Double> fitInternal(Histogram data, int dataSamples)
+	{
+		return Continuous.fit(data).fitSampled(dataSamples);
+	}
 
 	/**
 	 * Represents the intermediate stage of fitting a power law to data. 
@@ -93,6 +190,17 @@ public class Continuous extends AbstractPowerLaw<Double>
 			super(data);
 		}
 		
+		public Fit(Histogram data)
+		{
+			super(data);
+		}
+		
+		@Override
+		protected Double box(double x)
+		{
+			return x;
+		}
+		
 		/**
 		 * Estimate a power law, discarding all data below the given xMin
 		 * 
@@ -104,46 +212,52 @@ public class Continuous extends AbstractPowerLaw<Double>
 		@Override
 		public Continuous fit(Double xMin)
 		{
-			double n = 0.0;
-			double sum = 0.0;
-			for(double datum : data())
-				if(datum >= xMin)
-				{
-					sum += Math.log(datum / xMin);
-					n++;
-				}
-			
-			return new Continuous(xMin, 1.0 + n / sum);
+			return estimate(histogram(), xMin);
 		}
 	}
 	
-	protected static Uncertainties uncertainties(List<Double> data, int bootstrapSize)
+	/**
+	 * Clauset 2007 formula 3.1 for the given xMin, computed in constant time 
+	 * (after a binary search) from the tail sums of the histogram.
+	 * 
+	 * @param data
+	 * @param xMin
+	 * @return
+	 */
+	static Continuous estimate(Histogram data, double xMin)
 	{
-		List<Double> exponents = new ArrayList<Double>(bootstrapSize);
-		List<Integer> ntails = new ArrayList<Integer>(bootstrapSize);
-		List<Double> xMins = new ArrayList<Double>(bootstrapSize);
+		int i = data.tailStart(xMin);
 		
-		List<Double> bData = new ArrayList<Double>(bootstrapSize);
-		for(int i : series(bootstrapSize))
-		{
-			// * Draw data randomly
-			bData.clear();
-			for(int j : series(data.size()))
-				bData.add(data.get(PowerLaws.random.nextInt(data.size())));
-				
-			// * fit model
-			Continuous cpl = Continuous.fit(bData).fit();
-			
-			// * extract parameters
-			exponents.add(cpl.exponent());
-			xMins.add(cpl.xMin());
-			ntails.add(cpl.tailSize(data));
-		}
+		double n = data.tailSize(i);
+		double sum = data.tailLogSum(i) - n * Math.log(xMin);
 		
-		double nTailUncertainty    = Functions.standardDeviation(ntails), 
-		       xMinUncertainty     = Functions.standardDeviation(xMins),
-		       exponentUncertainty = Functions.standardDeviation(exponents);	
+		return new Continuous(xMin, 1.0 + n / sum);
+	}
+	
+	/**
+	 * Estimates the uncertainty of the parameters of a power law fitted to 
+	 * the data, by bootstrapping.
+	 * 
+	 * Each replicate is refitted, so the result does not depend on a model 
+	 * fitted to the data itself; use the uncertainties(...) methods of a 
+	 * fitted model to choose the executor and random source.
+	 * 
+	 * @param data
+	 * @param bootstrapSize
+	 * @return
+	 */
+	protected static Uncertainties uncertainties(List<Double> data, int bootstrapSize)
+	{
+		Function<Histogram, PowerLaw<Double>> fit = new Function<Histogram, PowerLaw<Double>>()
+		{
+			@Override
+			public PowerLaw<Double> apply(Histogram resampled)
+			{
+				return Continuous.fit(resampled).fit();
+			}
+		};
 		
-		return new Uncertainties(exponentUncertainty, xMinUncertainty, nTailUncertainty);
+		return bootstrap(
+				new Histogram(data), bootstrapSize, PowerLaws.executor, PowerLaws.random, fit);
 	}
 }
@@ -7,12 +7,19 @@ import static nl.peterbloem.powerlaws.PowerLaws.KS_CORRECT;
 import static nl.peterbloem.util.Series.series;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.LongToIntFunction;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
 
 import nl.peterbloem.util.Series;
+import nl.peterbloem.util.SplitRandom;
 
 
 public class Discrete extends AbstractPowerLaw<Integer>
@@ -20,23 +27,255 @@ public class Discrete extends AbstractPowerLaw<Integer>
 	public static double ALPHA_MIN  = 1.5;
 	public static double ALPHA_MAX  = 3.5;
 	public static double ALPHA_STEP = 0.01;
+	
+	/**
+	 * The initial step taken from the starting point when bracketing the 
+	 * maximum likelihood exponent.
+	 */
+	private static final double BRACKET_STEP = 0.05;
+	
+	/**
+	 * The precision to which the maximum likelihood exponent is determined.
+	 */
+	private static final double TOLERANCE = 1E-10;
+	private static final int MAX_ITERATIONS = 100;
+	
+	/**
+	 * The largest gap between successive candidates for xMin over which the
+	 * sweep in fitSampled updates its zeta values by recurrence rather than 
+	 * recomputing them.
+	 */
+	private static final int SWEEP_GAP = 16;
+	
 	private double pdenum;
 	
+	// * The constants of the rejection sampler
+	private double hIntegralX1, squeeze;
+	
 	public Discrete(int xMin, double exponent)
 	{
 		super(xMin, exponent);
 		
 		pdenum = zeta(exponent, xMin);
+		
+		hIntegralX1 = hIntegral(xMin + 0.5) - h(xMin);
+		squeeze = xMin + 1.0 - hIntegralInverse(hIntegral(xMin + 1.5) - h(xMin + 1.0));
 	}
 
+	/**
+	 * Draws a value by rejection-inversion. This takes constant expected 
+	 * time, without evaluating the zeta function. Use 
+	 * cdfInv(1.0 - random.nextDouble()) to draw by inversion.
+	 */
 	@Override
-	public Integer generate()
+	public Integer generate(Random random)
 	{
-		double source = PowerLaws.random.nextDouble();
-
-		return cdfInv(1.0 - source);
+		return sample(random);
+	}
+	
+	@Override
+	public double fromUniform(double uniform)
+	{
+		return cdfInv(1.0 - uniform);
+	}
+	
+	@Override
+	protected double draw(Random random)
+	{
+		return sample(random);
+	}
+	
+	/**
+	 * Rejection-inversion sampling (Hoermann and Derflinger 1996, as in the
+	 * Zipf sampler of Apache Commons Math), with a support starting at xMin
+	 * and no upper bound. 
+	 * 
+	 * Each value k is given the interval [H(k - 0.5), H(k + 0.5)], where H is 
+	 * the integral of h(x) = x^-exponent (the interval of xMin extends below 
+	 * xMin - 0.5 so that its length is at least h(xMin)). A point u is drawn 
+	 * uniformly from the union of these intervals and k is accepted with 
+	 * probability h(k) over the length of its interval, so that the result is
+	 * distributed exactly as h(k). The expected number of draws is the total
+	 * length of the intervals over zeta(exponent, xMin), which is close to 
+	 * one (1.02 for xMin = 1 and exponent 2.5, less for larger xMin). Values 
+	 * close to the center of their interval are accepted without any further
+	 * calculation.
+	 * 
+	 * Values beyond the range of int are rejected.
+	 */
+	private int sample(Random random)
+	{
+		if(exponent() <= 1.0)
+			return cdfInv(1.0 - random.nextDouble());
+		
+		int xMin = xMin();
+		
+		while(true)
+		{
+			// * A uniform point in [hIntegralX1, 0), since H(infinity) = 0
+			double u = hIntegralX1 * (1.0 - random.nextDouble());
+			double x = hIntegralInverse(u);
+			
+			if(x >= Integer.MAX_VALUE)
+				continue;
+			
+			int k = (int)(x + 0.5);
+			if(k < xMin)
+				k = xMin;
+			
+			if(k - x <= squeeze || u >= hIntegral(k + 0.5) - h(k))
+				return k;
+		}
+	}
+	
+	private double h(double x)
+	{
+		return pow(x, - exponent());
+	}
+	
+	private double hIntegral(double x)
+	{
+		return pow(x, 1.0 - exponent()) / (1.0 - exponent());
+	}
+	
+	private double hIntegralInverse(double y)
+	{
+		return pow(y * (1.0 - exponent()), 1.0 / (1.0 - exponent()));
+	}
+	
+	/**
+	 * Fills the array between from (inclusive) and to (exclusive) with values
+	 * drawn from this distribution.
+	 * 
+	 * @param target
+	 * @param from
+	 * @param to
+	 * @param random
+	 */
+	public void generate(int[] target, int from, int to, Random random)
+	{
+		for(int i = from; i < to; i++)
+			target[i] = sample(random);
+	}
+	
+	/**
+	 * Fills the array between from (inclusive) and to (exclusive) with values
+	 * drawn from this distribution.
+	 * 
+	 * @param target
+	 * @param from
+	 * @param to
+	 * @param random
+	 */
+	public void generate(long[] target, int from, int to, Random random)
+	{
+		for(int i = from; i < to; i++)
+			target[i] = sample(random);
+	}
+	
+	/**
+	 * Returns a stream of the given number of values drawn from this 
+	 * distribution. The stream can be run in parallel. Each value is drawn by
+	 * rejection-inversion, from a generator seeded by the corresponding 
+	 * element of SplitRandom.seeds(), so run in parallel, the stream produces
+	 * the same values as run sequentially.
+	 * 
+	 * @param number
+	 * @param random
+	 * @return
+	 */
+	public IntStream ints(long number, Random random)
+	{
+		// * One generator per thread, reseeded for each element
+		final ThreadLocal<SplitRandom> generators = new ThreadLocal<SplitRandom>()
+		{
+			@Override
+			protected SplitRandom initialValue()
+			{
+				return new SplitRandom(0L);
+			}
+		};
+		
+		return SplitRandom.of(random).seeds(number).mapToInt(new LongToIntFunction()
+		{
+			@Override
+			public int applyAsInt(long seed)
+			{
+				SplitRandom generator = generators.get();
+				generator.setSeed(seed);
+				
+				return sample(generator);
+			}
+		});
+	}
+	
+	/**
+	 * The values of ints(number, random), as doubles.
+	 */
+	@Override
+	public DoubleStream doubles(long number, Random random)
+	{
+		return ints(number, random).asDoubleStream();
 	}
 
+	/**
+	 * Draws the count of each value x from xMin upward, from a binomial 
+	 * distribution conditional on the number of points that are at least x. 
+	 * Once the expected count of a value drops below one, the remaining 
+	 * points are generated individually from the tail beyond it. For n points,
+	 * this takes about n^(1/exponent) steps.
+	 */
+	@Override
+	protected Histogram generateHistogram(long number, Random random)
+	{
+		double exponent = exponent();
+		
+		double[] values = new double[16];
+		long[] counts = new long[16];
+		int m = 0;
+		
+		// * The probability mass of all values from x onward, up to pdenum
+		double tail = pdenum;
+		long remaining = number;
+		int x = xMin();
+		while(remaining > 0)
+		{
+			double term = pow(x, -exponent);
+			double p = term / tail;
+			
+			if(remaining * p < 1.0)
+				break;
+			
+			long count = Functions.binomial(remaining, p, random);
+			if(count > 0)
+			{
+				if(m == values.length)
+				{
+					values = Arrays.copyOf(values, 2 * m);
+					counts = Arrays.copyOf(counts, 2 * m);
+				}
+				
+				values[m] = x;
+				counts[m++] = count;
+				remaining -= count;
+			}
+			
+			tail -= term;
+			x++;
+		}
+		
+		Histogram histogram = new Histogram(Arrays.copyOf(values, m), Arrays.copyOf(counts, m));
+		if(remaining == 0)
+			return histogram;
+		
+		return histogram.merge(new Discrete(x, exponent).generateIndividually(remaining, random));
+	}
+	
+	private Histogram generateIndividually(long number, Random random)
+	{
+		return super.generateHistogram(number, random);
+	}
+	
 	/**
 	 * Returns a value x such that P(x) = q
 	 * 
@@ -60,46 +299,78 @@ public class Discrete extends AbstractPowerLaw<Integer>
 	 * Returns the result of the Kolmogorov Smirnov test on this power law and the 
 	 * distribution suggested by the data.
 	 * 
-	 * Note that unlike the continuous KS test, this version loops over all
+	 * Note that unlike the continuous KS test, this version considers all
 	 * (integer) values of x between xMin and xMax rather than just the data 
-	 * points.
+	 * points. Between two successive distinct values in the data, the 
+	 * empirical cdf is constant and the cdf of the model increases, so the 
+	 * largest difference in such a range is found at one of its ends. We 
+	 * only evaluate those. 
+	 * 
+	 * The distinct values are visited from high to low, and the zeta values
+	 * needed for the cdf are kept up to date with the recurrence 
+	 * zeta(a, q) = zeta(a, q + 1) + q^-a. The zeta function is only called 
+	 * for the highest value, and where successive values are more than 
+	 * SWEEP_GAP apart.
 	 * 
 	 * @param data
-	 * @param filter If true, the test is only performed using datapoints d with 
-	 *   d >= xMin. If false, all data is used
+	 * @param from
 	 * @return
 	 */
 	@Override
-	public double ksTest(Collection<? extends Integer> data)
+	public double ksTest(Histogram data, int from)
 	{
-		List<Integer> copy = new ArrayList<Integer>(data.size());
-		int xMax = Integer.MIN_VALUE;
-		for(int datum : data)
-			if(datum >= xMin())
-			{
-				copy.add(datum);
-				xMax = Math.max(xMax, datum);
-			}
-		Collections.sort(copy);
-		List<Integer> counts = count(xMin(), xMax, copy);
-		
+		if(from >= data.size())
+			return Double.NEGATIVE_INFINITY;
+
+		long n = data.tailSize(from);
+		double exponent = exponent();
+
 		double max = Double.NEGATIVE_INFINITY;
 		
-		double plCDF = 0.0;
-		for(int x : series(xMin(), xMax + 1))
+		// * The cdf of the model, P(X <= x), is 
+		//   1 - zeta(exponent, x + 1) / zeta(exponent, xMin)
+		int last = data.size() - 1;
+		int value = (int) data.value(last);
+		double zetaValue = zeta(exponent, value);
+		
+		for(int i = last; i >= from; i--)
 		{
-			int count = counts.get(x - xMin());
-			double dataCDF = count / (double) copy.size();
-
-			plCDF += pow(x, - exponent()) / zeta(exponent(), xMin());
+			double dataCDF = (n - data.tailSize(i + 1)) / (double) n;
+			
+			// * zeta(exponent, value + 1) follows from zeta(exponent, value)
+			double plCDF = 1.0 - (zetaValue - pow(value, - exponent)) / pdenum;
+			max = Math.max(Math.abs(dataCDF - plCDF), max);
+			
+			if(i == from)
+				break;
+			
+			int previous = (int) data.value(i - 1);
+			
+			// * The last integer before this value, where the empirical cdf is 
+			//   still that of the previous value
+			if(value > previous + 1)
+			{
+				double previousCDF = (n - data.tailSize(i)) / (double) n;
+				plCDF = 1.0 - zetaValue / pdenum;
+				max = Math.max(Math.abs(previousCDF - plCDF), max);
+			}
+			
+			if(value - previous > SWEEP_GAP)
+				zetaValue = zeta(exponent, previous);
+			else
+				for(int x = value - 1; x >= previous; x--)
+					zetaValue += pow(x, - exponent);
 			
-			double diff = Math.abs(dataCDF - plCDF);
-			max = Math.max(diff, max);
+			value = previous;
 		}
 		
+		// * Below the first value the empirical cdf is zero
+		if(value > xMin())
+			max = Math.max(1.0 - zetaValue / pdenum, max);
+
 		return max;
-	}	
-	
+	}
+
 	/**
 	 * Returns a cumulative histogram that counts for each integer from min
 	 * to max (inclusive) the number of data points lower than or equal to that 
@@ -182,6 +453,17 @@ public class Discrete extends AbstractPowerLaw<Integer>
 		return new Discrete.Fit(data);
 	}
 	
+	/**
+	 * Fits a power law to data given as a histogram. 
+	 * 
+	 * @param data
+	 * @return
+	 */
+	public static PowerLaw.Fit<Integer, Discrete> fit(Histogram data)
+	{
+		return new Fit(data);
+	}
+	
 	@Override
 	public double p(Integer x)
 	{
@@ -193,6 +475,12 @@ public class Discrete extends AbstractPowerLaw<Integer>
 	{
 		return Discrete.fit(data).fitSampled(dataSamples);
 	}
+	
+	@Override
+	protected PowerLaw<Integer> fitInternal(Histogram data, int dataSamples)
+	{
+		return Discrete.fit(data).fitSampled(dataSamples);
+	}
 
 	/**
 	 * Represents the intermediate stage of fitting a power law to data. 
@@ -209,31 +497,162 @@ public class Discrete extends AbstractPowerLaw<Integer>
 			super(data);
 		}
 		
+		public Fit(Histogram data)
+		{
+			super(data);
+		}
+		
+		@Override
+		protected Integer box(double x)
+		{
+			return (int) x;
+		}
+		
 		/**
 		 * Estimate a power law, discarding all data below the given xMin
 		 * 
-		 * Implementation of Clauset 2007 3.5
+		 * Implementation of Clauset 2007 3.5. The likelihood is maximized by 
+		 * finding the root of its derivative with Brent's method, starting 
+		 * from the approximation of Clauset 2007 3.7. The exponent is 
+		 * restricted to the interval [ALPHA_MIN, ALPHA_MAX].
+		 * 
+		 * The likelihood is not defined for xMin below 1. For such xMin, the 
+		 * exponent of the returned model is NaN (and so is its KS distance to 
+		 * any data, so the searches over xMin never select it).
 		 * 
 		 * @param xMin
 		 * @return
 		 */
 		public Discrete fit(Integer xMin)
 		{
-			double bestAlpha = - 1.0,
-			       maxLL = Double.NEGATIVE_INFINITY;
+			return new Discrete(xMin, exponent(xMin));
+		}
+		
+		/**
+		 * Sweeps the candidates for xMin from high to low. For each exponent 
+		 * in a grid from ALPHA_MIN to ALPHA_MAX (with step ALPHA_STEP) we keep 
+		 * zeta(alpha, xMin) and its derivative up to date with the recurrence 
+		 * zeta(a, q) = zeta(a, q + 1) + q^-a, so that the derivative of the 
+		 * likelihood is known on the grid without calls to the zeta function. 
+		 * The derivative decreases with the exponent, so the grid points 
+		 * where it changes sign bracket the maximum, which is then found by 
+		 * Brent's method within this bracket. 
+		 * 
+		 * Each candidate is thus scored by the KS distance of the same model 
+		 * as fit(xMin) returns (up to the tolerance of Brent's method), so the 
+		 * sweep selects the same xMin as the exhaustive search. 
+		 * 
+		 * A candidate more than SWEEP_GAP below the previous one is fitted by 
+		 * exponent(xMin) instead, since refilling the grid would take 
+		 * hundreds of zeta evaluations. The grid is only refilled where the 
+		 * next candidate is close, so that the fill is paid for by the 
+		 * recurrence steps that follow it.
+		 */
+		@Override
+		public Discrete fitSampled(int samples)
+		{
+			Histogram data = histogram();
+			if(data.size() == 0)
+				return null;
+			
+			List<Double> grid = Series.series(ALPHA_MIN, ALPHA_STEP, ALPHA_MAX);
+			double[] alphas = new double[grid.size()];
+			for(int j : series(alphas.length))
+				alphas[j] = grid.get(j);
 			
-			for(double alpha : Series.series(ALPHA_MIN, ALPHA_STEP, ALPHA_MAX))
+			double[] zetas = new double[alphas.length], 
+			         derivatives = new double[alphas.length];
+			
+			int step = step(samples);
+			int last = ((data.size() - 1) / step) * step;
+			
+			Discrete best = null;
+			double bestDistance = Double.POSITIVE_INFINITY;
+			evaluated = 0;
+			
+			int q = -1;
+			for(int i = last; i >= 0; i -= step)
 			{
-				double ll = logLikelihood(alpha, xMin);
+				int xMin = (int) data.value(i);
+				
+				// * The remaining candidates are below 1, where the likelihood 
+				//   is not defined
+				if(xMin < 1)
+					break;
 				
-				if(ll > maxLL)
+				// * Whether the grid is up to date for this candidate
+				boolean swept = q >= 0 && q - xMin <= SWEEP_GAP;
+				if(swept)
 				{
-					bestAlpha = alpha;
-					maxLL = ll;
+					for(int x = q - 1; x >= xMin; x--)
+					{
+						// * The terms x^-alpha over the grid form a geometric
+						//   sequence, so they take two exponentials, not a 
+						//   power per grid point
+						double logX = log(x);
+						double term = Math.exp(- alphas[0] * logX), 
+						       ratio = Math.exp(- ALPHA_STEP * logX);
+						for(int j = 0; j < alphas.length; j++)
+						{
+							zetas[j] += term;
+							derivatives[j] -= logX * term;
+							term *= ratio;
+						}
+					}
+				} else if(i - step >= 0 && xMin - data.value(i - step) <= SWEEP_GAP)
+				{
+					// * The next candidate is close, so filling the grid pays off
+					for(int j : series(alphas.length))
+					{
+						zetas[j] = zeta(alphas[j], xMin);
+						derivatives[j] = Functions.zetaDerivative(alphas[j], xMin);
+					}
+					swept = true;
+				}
+				q = swept ? xMin : -1;
+				
+				double alpha;
+				if(!swept)
+					alpha = exponent(xMin);
+				else
+				{
+					double meanLog = data.tailLogSum(i) / data.tailSize(i);
+					
+					// * The first grid point where the derivative is not positive
+					int j = 0;
+					double fj = 0.0;
+					for(; j < alphas.length; j++)
+					{
+						fj = - derivatives[j] / zetas[j] - meanLog;
+						if(fj <= 0.0)
+							break;
+					}
+					
+					if(j == alphas.length)
+						// * The grid may stop short of ALPHA_MAX
+						alpha = exponent(xMin);
+					else if(j == 0 || fj == 0.0)
+						alpha = alphas[j];
+					else
+					{
+						double before = - derivatives[j - 1] / zetas[j - 1] - meanLog;
+						alpha = brent(alphas[j - 1], before, alphas[j], fj, xMin, meanLog);
+					}
+				}
+				
+				Discrete current = new Discrete(xMin, alpha);
+				double currentDistance = current.ksTest(data, i);
+				evaluated++;
+				
+				// * On ties, prefer the lower xMin, as the upward scan would
+				if(currentDistance <= bestDistance)
+				{
+					bestDistance = currentDistance;
+					best = current;
 				}
 			}
 			
-			return new Discrete(xMin, bestAlpha);
+			return best;
 		}
 		
 		/**
@@ -243,46 +662,177 @@ public class Discrete extends AbstractPowerLaw<Integer>
 		 */
 		public double logLikelihood(double alpha, int xMin)
 		{
-			double sum = 0.0;
-			double n = 0.0;
-			for(int datum : data())
-				if(datum >= xMin)
-				{
-					sum += log(datum);
-					n++;
-				}
+			int i = histogram().tailStart(xMin);
+			
+			double n = histogram().tailSize(i);
+			double sum = histogram().tailLogSum(i);
 			
 			return - n * log(zeta(alpha, xMin)) - alpha * sum;
 		}
-	}
-	
-	protected static Uncertainties uncertainties(List<Integer> data, int bootstrapSize)
-	{
-		List<Double> exponents = new ArrayList<Double>(bootstrapSize);
-		List<Integer> ntails = new ArrayList<Integer>(bootstrapSize);
-		List<Integer> xMins = new ArrayList<Integer>(bootstrapSize);
 		
-		List<Integer> bData = new ArrayList<Integer>(bootstrapSize);
-		for(int i : series(bootstrapSize))
+		private double exponent(int xMin)
 		{
-			// * Draw data randomly
-			bData.clear();
-			for(int j : series(data.size()))
-				bData.add(data.get(PowerLaws.random.nextInt(data.size())));
+			int i = histogram().tailStart(xMin);
+			
+			double n = histogram().tailSize(i);
+			if(n == 0.0)
+				return ALPHA_MIN;
+			
+			// * The mean log of the tail. The likelihood is maximal where the 
+			//   expected log under the model equals this value.
+			double meanLog = histogram().tailLogSum(i) / n;
+			
+			// * Clauset 2007 3.7
+			double start = 1.0 + 1.0 / (meanLog - log(xMin - 0.5));
+			start = Math.min(Math.max(start, ALPHA_MIN), ALPHA_MAX);
+			
+			// * Bracket the root of the derivative, stepping away from the 
+			//   starting point with increasing steps
+			double a = start, fa = derivative(start, xMin, meanLog);
+			if(Double.isNaN(start) || Double.isInfinite(fa) || Double.isNaN(fa))
+				return Double.NaN;
+			if(fa == 0.0)
+				return a;
+			
+			double direction = fa > 0.0 ? 1.0 : -1.0;
+			double limit = fa > 0.0 ? ALPHA_MAX : ALPHA_MIN;
+			double step = BRACKET_STEP;
+			
+			for(int iteration = 0; iteration < MAX_ITERATIONS; iteration++)
+			{
+				if(a == limit)
+					return limit;
+				
+				double b = direction > 0.0 ? Math.min(a + step, limit) : Math.max(a - step, limit);
+				double fb = derivative(b, xMin, meanLog);
 				
-			// * fit model
-			Discrete cpl = Discrete.fit(bData).fit();
+				if(Double.isInfinite(fb) || Double.isNaN(fb))
+					return Double.NaN;
+				if(fb == 0.0)
+					return b;
+				if((fb > 0.0) != (fa > 0.0))
+					return brent(a, fa, b, fb, xMin, meanLog);
+				
+				a = b;
+				fa = fb;
+				step *= 2.0;
+			}
 			
-			// * extract parameters
-			exponents.add(cpl.exponent());
-			xMins.add(cpl.xMin());
-			ntails.add(cpl.tailSize(data));
+			return Double.NaN;
+		}
+		
+		/**
+		 * The derivative of the log likelihood with respect to the exponent, 
+		 * divided by the size of the tail.
+		 */
+		private static double derivative(double alpha, int xMin, double meanLog)
+		{
+			return - Functions.zetaDerivative(alpha, xMin) / zeta(alpha, xMin) - meanLog; 
 		}
 		
-		double nTailUncertainty    = Functions.standardDeviation(ntails), 
-		       xMinUncertainty     = Functions.standardDeviation(xMins),
-		       exponentUncertainty = Functions.standardDeviation(exponents);	
+		/**
+		 * Brent's method for the root of the derivative, given a bracketing 
+		 * interval. 
+		 */
+		private static double brent(
+				double a, double fa, double b, double fb, int xMin, double meanLog)
+		{
+			double c = b, fc = fb, d = b - a, e = d;
+			
+			for(int iteration = 0; iteration < MAX_ITERATIONS; iteration++)
+			{
+				if((fb > 0.0) == (fc > 0.0))
+				{
+					c = a; 
+					fc = fa;
+					d = b - a;
+					e = d;
+				}
+				
+				if(Math.abs(fc) < Math.abs(fb))
+				{
+					a = b; b = c; c = a;
+					fa = fb; fb = fc; fc = fa;
+				}
+				
+				double tolerance = 2.0 * Math.ulp(b) + 0.5 * TOLERANCE;
+				double m = 0.5 * (c - b);
+				
+				if(Math.abs(m) <= tolerance || fb == 0.0)
+					return b;
+				
+				if(Math.abs(e) >= tolerance && Math.abs(fa) > Math.abs(fb))
+				{
+					// * Attempt inverse quadratic interpolation
+					double p, q, r, s = fb / fa;
+					if(a == c)
+					{
+						p = 2.0 * m * s;
+						q = 1.0 - s;
+					} else
+					{
+						q = fa / fc;
+						r = fb / fc;
+						p = s * (2.0 * m * q * (q - r) - (b - a) * (r - 1.0));
+						q = (q - 1.0) * (r - 1.0) * (s - 1.0);
+					}
+					
+					if(p > 0.0)
+						q = -q;
+					else
+						p = -p;
+					
+					if(2.0 * p < Math.min(3.0 * m * q - Math.abs(tolerance * q), Math.abs(e * q)))
+					{
+						e = d;
+						d = p / q;
+					} else
+					{
+						// * Interpolation failed, use bisection
+						d = m;
+						e = d;
+					}
+				} else
+				{
+					d = m;
+					e = d;
+				}
+				
+				a = b;
+				fa = fb;
+				
+				b += Math.abs(d) > tolerance ? d : Math.copySign(tolerance, m);
+				fb = derivative(b, xMin, meanLog);
+			}
+			
+			return b;
+		}
+	}
+	
+	/**
+	 * Estimates the uncertainty of the parameters of a power law fitted to 
+	 * the data, by bootstrapping.
+	 * 
+	 * Each replicate is refitted, so the result does not depend on a model 
+	 * fitted to the data itself; use the uncertainties(...) methods of a 
+	 * fitted model to choose the executor and random source.
+	 * 
+	 * @param data
+	 * @param bootstrapSize
+	 * @return
+	 */
+	protected static Uncertainties uncertainties(List<Integer> data, int bootstrapSize)
+	{
+		Function<Histogram, PowerLaw<Integer>> fit = new Function<Histogram, PowerLaw<Integer>>()
+		{
+			@Override
+			public PowerLaw<Integer> apply(Histogram resampled)
+			{
+				return Discrete.fit(resampled).fit();
+			}
+		};
 		
-		return new Uncertainties(exponentUncertainty, xMinUncertainty, nTailUncertainty);
+		return bootstrap(
+				new Histogram(data), bootstrapSize, PowerLaws.executor, PowerLaws.random, fit);
 	}
 }
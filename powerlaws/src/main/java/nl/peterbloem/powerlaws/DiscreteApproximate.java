@@ -4,10 +4,17 @@ import static java.lang.Math.log;
 import static nl.peterbloem.util.Series.series;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.function.DoubleToIntFunction;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import nl.peterbloem.util.SplitRandom;
 
 
 /**
@@ -34,9 +41,140 @@ public class DiscreteApproximate extends AbstractPowerLaw<Integer>
 	}
 
 	@Override
-	public Integer generate()
+	public Integer generate(Random random)
+	{
+		return (int) Math.round(approximation.generate(random));
+	}
+	
+	@Override
+	public double fromUniform(double uniform)
+	{
+		return Math.round(approximation.fromUniform(uniform));
+	}
+	
+	/**
+	 * Fills the array between from (inclusive) and to (exclusive) with values
+	 * drawn from this distribution.
+	 * 
+	 * @param target
+	 * @param from
+	 * @param to
+	 * @param random
+	 */
+	public void generate(int[] target, int from, int to, Random random)
+	{
+		double xMin = approximation.xMin(), p = - 1.0 / (exponent() - 1.0);
+		
+		for(int i = from; i < to; i++)
+			target[i] = (int) Math.round(xMin * Math.pow(1.0 - random.nextDouble(), p));
+	}
+	
+	/**
+	 * Fills the array between from (inclusive) and to (exclusive) with values
+	 * drawn from this distribution.
+	 * 
+	 * @param target
+	 * @param from
+	 * @param to
+	 * @param random
+	 */
+	public void generate(long[] target, int from, int to, Random random)
 	{
-		return (int) Math.round(approximation.generate());
+		double xMin = approximation.xMin(), p = - 1.0 / (exponent() - 1.0);
+		
+		for(int i = from; i < to; i++)
+			target[i] = Math.round(xMin * Math.pow(1.0 - random.nextDouble(), p));
+	}
+	
+	@Override
+	public void generate(double[] target, int from, int to, Random random)
+	{
+		double xMin = approximation.xMin(), p = - 1.0 / (exponent() - 1.0);
+		
+		for(int i = from; i < to; i++)
+			target[i] = Math.round(xMin * Math.pow(1.0 - random.nextDouble(), p));
+	}
+	
+	/**
+	 * Returns a stream of the given number of values drawn from this 
+	 * distribution. The stream can be run in parallel. 
+	 * 
+	 * @param number
+	 * @param random
+	 * @return
+	 */
+	public IntStream ints(long number, Random random)
+	{
+		return SplitRandom.of(random).doubles(number).mapToInt(new DoubleToIntFunction()
+		{
+			@Override
+			public int applyAsInt(double uniform)
+			{
+				return (int) Math.round(approximation.fromUniform(uniform));
+			}
+		});
+	}
+	
+	/**
+	 * Draws the count of each value x from xMin upward, as Discrete does. A 
+	 * generated value is at least x when the continuous value it was rounded 
+	 * from is at least x - 0.5, so the remaining points are generated from 
+	 * the continuous tail beyond that.
+	 * 
+	 * The first value is the lowest one that the continuous values can be 
+	 * rounded to. For a fitted model, whose continuous xMin is a half-integer,
+	 * this is one above xMin().
+	 */
+	@Override
+	protected Histogram generateHistogram(long number, Random random)
+	{
+		double exponent = exponent(), xMin = approximation.xMin();
+		
+		double[] values = new double[16];
+		long[] counts = new long[16];
+		int m = 0;
+		
+		long remaining = number;
+		int x = (int) Math.floor(xMin + 0.5);
+		while(remaining > 0)
+		{
+			// * The probability that a value is x, given that it is at least x
+			double lower = Math.max(x - 0.5, xMin), upper = x + 0.5;
+			double p = 1.0 - Math.pow(upper / lower, 1.0 - exponent);
+			
+			if(remaining * p < 1.0)
+				break;
+			
+			long count = Functions.binomial(remaining, p, random);
+			if(count > 0)
+			{
+				if(m == values.length)
+				{
+					values = Arrays.copyOf(values, 2 * m);
+					counts = Arrays.copyOf(counts, 2 * m);
+				}
+				
+				values[m] = x;
+				counts[m++] = count;
+				remaining -= count;
+			}
+			
+			x++;
+		}
+		
+		Histogram histogram = new Histogram(Arrays.copyOf(values, m), Arrays.copyOf(counts, m));
+		if(remaining == 0)
+			return histogram;
+		
+		if(remaining > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Cannot generate "+remaining+" points one by one.");
+		
+		DiscreteApproximate rest = new DiscreteApproximate(
+				new Continuous(Math.max(x - 0.5, xMin), exponent));
+		double[] points = new double[(int) remaining];
+		rest.generate(points, random);
+		
+		return histogram.merge(new Histogram(points));
 	}
 	
 	@Override
@@ -54,13 +192,16 @@ public class DiscreteApproximate extends AbstractPowerLaw<Integer>
 	}
 
 
-	public double ksTest(Collection<? extends Integer> data)
+	@Override
+	public double ksTest(Histogram data)
 	{
-		List<Double> doubleData = new ArrayList<Double>(data.size());
-		for(int datum : data)
-			doubleData.add((double)datum);
-		
-		return approximation.ksTest(doubleData);
+		return approximation.ksTest(data, data.tailStart(approximation.xMin()));
+	}
+
+	@Override
+	public double ksTest(Histogram data, int from)
+	{
+		return approximation.ksTest(data, from);
 	}
 	
 	@Override
@@ -76,26 +217,45 @@ public class DiscreteApproximate extends AbstractPowerLaw<Integer>
 	{
 		return DiscreteApproximate.fit(data).fitSampled(dataSamples);
 	}
+	
+	@Override
+	protected PowerLaw<Integer> fitInternal(Histogram data, int dataSamples)
+	{
+		return DiscreteApproximate.fit(data).fitSampled(dataSamples);
+	}
 
 	public static PowerLaw.Fit<Integer, DiscreteApproximate> fit(Collection<? extends Integer> data)
 	{
 		return new Fit(data);
 	}
 	
+	/**
+	 * Fits a power law to data given as a histogram. 
+	 * 
+	 * @param data
+	 * @return
+	 */
+	public static PowerLaw.Fit<Integer, DiscreteApproximate> fit(Histogram data)
+	{
+		return new Fit(data);
+	}
+	
 	public static class Fit extends AbstractPowerLaw.AbstractFit<Integer, DiscreteApproximate>
 	{
-		private PowerLaw.Fit<Double, Continuous> approximation;
-
-		
 		public Fit(Collection<? extends Integer> data)
 		{
 			super(data);
-			
-			List<Double> doubleData = new ArrayList<Double>(data.size());
-			for(int datum : data)
-				doubleData.add((double)datum);
-			
-			approximation = Continuous.fit(doubleData);
+		}
+		
+		public Fit(Histogram data)
+		{
+			super(data);
+		}
+		
+		@Override
+		protected Integer box(double x)
+		{
+			return (int) x;
 		}
 		
 		/**
@@ -109,37 +269,34 @@ public class DiscreteApproximate extends AbstractPowerLaw<Integer>
 		public DiscreteApproximate fit(Integer xMin)
 		{
 			double xApp = xMin - .5;
-			return new DiscreteApproximate(approximation.fit(xApp));
+			return new DiscreteApproximate(Continuous.estimate(histogram(), xApp));
 		}
 	}	
 	
+	/**
+	 * Estimates the uncertainty of the parameters of a power law fitted to 
+	 * the data, by bootstrapping.
+	 * 
+	 * Each replicate is refitted, so the result does not depend on a model 
+	 * fitted to the data itself; use the uncertainties(...) methods of a 
+	 * fitted model to choose the executor and random source.
+	 * 
+	 * @param data
+	 * @param bootstrapSize
+	 * @return
+	 */
 	protected static Uncertainties uncertainties(List<Integer> data, int bootstrapSize)
 	{
-		List<Double> exponents = new ArrayList<Double>(bootstrapSize);
-		List<Integer> ntails = new ArrayList<Integer>(bootstrapSize);
-		List<Integer> xMins = new ArrayList<Integer>(bootstrapSize);
-		
-		List<Integer> bData = new ArrayList<Integer>(bootstrapSize);
-		for(int i : series(bootstrapSize))
+		Function<Histogram, PowerLaw<Integer>> fit = new Function<Histogram, PowerLaw<Integer>>()
 		{
-			// * Draw data randomly
-			bData.clear();
-			for(int j : series(data.size()))
-				bData.add(data.get(PowerLaws.random.nextInt(data.size())));
-				
-			// * fit model
-			DiscreteApproximate cpl = DiscreteApproximate.fit(bData).fit();
-			
-			// * extract parameters
-			exponents.add(cpl.exponent());
-			xMins.add(cpl.xMin());
-			ntails.add(cpl.tailSize(data));
-		}
-		
-		double nTailUncertainty    = Functions.standardDeviation(ntails), 
-		       xMinUncertainty     = Functions.standardDeviation(xMins),
-		       exponentUncertainty = Functions.standardDeviation(exponents);	
+			@Override
+			public PowerLaw<Integer> apply(Histogram resampled)
+			{
+				return DiscreteApproximate.fit(resampled).fit();
+			}
+		};
 		
-		return new Uncertainties(exponentUncertainty, xMinUncertainty, nTailUncertainty);
+		return bootstrap(
+				new Histogram(data), bootstrapSize, PowerLaws.executor, PowerLaws.random, fit);
 	}	
 }
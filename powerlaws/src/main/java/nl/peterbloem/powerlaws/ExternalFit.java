@@ -0,0 +1,705 @@
+package nl.peterbloem.powerlaws;
+
+import static nl.peterbloem.powerlaws.PowerLaws.KS_CORRECT;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Fits a continuous power law to a dataset that does not fit in memory.
+ *
+ * Values are collected in a buffer. When it is full, it is sorted and written
+ * to disk as a run of distinct values with their counts. Before fitting, the
+ * runs are merged into a single sorted run (at most FAN_IN at a time), and the
+ * buffer is released until more values are added. Merged runs are deleted
+ * straight away. The search for xMin then reads this run sequentially, 
+ * computing the tail sizes and tail log-sums as prefix sums on the way, and 
+ * evaluates the KS distance of as many candidates at once as the memory 
+ * budget allows, besides the read buffer.
+ *
+ * The estimates are the same as those of Continuous.fit(data).fitSampled(...),
+ * up to the rounding errors of summing the logarithms in a different order.
+ *
+ * Call close() to delete the files on disk.
+ *
+ * @author Peter
+ *
+ */
+public class ExternalFit implements Closeable
+{
+	/**
+	 * The default memory budget: 64MB.
+	 */
+	public static final long DEFAULT_BUDGET = 64L << 20;
+
+	/**
+	 * The maximum number of runs merged at once. With a small budget, fewer 
+	 * runs are merged at once, so that their io buffers fit in half of it.
+	 */
+	public static final int FAN_IN = 64;
+
+	/**
+	 * The smallest io buffer.
+	 */
+	private static final int MIN_IO_BUFFER = 1 << 12;
+
+	/**
+	 * The size of a record in a run: a double value and a long count.
+	 */
+	private static final int RECORD = 16;
+
+	/**
+	 * The memory used per candidate for xMin during the search.
+	 */
+	private static final int CANDIDATE = 48;
+
+	private long budget;
+	private File directory;
+
+	// * Null while no values are buffered after a merge
+	private double[] buffer = null;
+	private int buffered = 0;
+
+	private List<Run> runs = new ArrayList<Run>();
+
+	/**
+	 * Creates a fit with the default memory budget, which writes its files to
+	 * the default temporary directory.
+	 */
+	public ExternalFit()
+	{
+		this(DEFAULT_BUDGET, null);
+	}
+
+	/**
+	 * @param budget The approximate number of bytes of heap to use. It bounds
+	 * 	the buffer of values, the read buffers during merging and the number of
+	 * 	candidates for xMin evaluated per pass over the data.
+	 * @param directory The directory for the files on disk, or null for the
+	 * 	default temporary directory.
+	 */
+	public ExternalFit(long budget, File directory)
+	{
+		if(budget < 1 << 16)
+			throw new IllegalArgumentException("The memory budget ("+budget+" bytes) should be at least 64KB.");
+
+		this.budget = budget;
+		this.directory = directory;
+	}
+
+	public void add(double value)
+	{
+		if(buffer == null)
+			buffer = new double[(int) Math.min(Integer.MAX_VALUE - 8, budget / 2 / 8)];
+		if(buffered == buffer.length)
+			spill();
+
+		buffer[buffered++] = value;
+	}
+
+	public void add(double[] values)
+	{
+		add(values, 0, values.length);
+	}
+
+	public void add(double[] values, int from, int to)
+	{
+		for(int i = from; i < to; i++)
+			add(values[i]);
+	}
+
+	/**
+	 * The number of values added.
+	 * @return
+	 */
+	public long count()
+	{
+		long count = buffered;
+		for(Run run : runs)
+			count += run.total;
+
+		return count;
+	}
+
+	/**
+	 * Estimates the best power law, trying every distinct value as xMin.
+	 *
+	 * @return
+	 */
+	public Continuous fit()
+	{
+		return fitSampled(-1);
+	}
+
+	/**
+	 * Estimates the best power law, trying approximately the given number of
+	 * evenly spaced distinct values as xMin.
+	 *
+	 * @param samples The number of candidates, or -1 for all distinct values.
+	 * @return
+	 */
+	public Continuous fitSampled(int samples)
+	{
+		Run run = merge();
+		if(run.total == 0)
+			throw new IllegalStateException("No data has been added.");
+
+		long m = run.distinct;
+		long step = (samples == m || samples == -1) ? 1 : Math.max(1, (long) Math.floor(m / (double) samples));
+		long candidates = (m + step - 1) / step;
+		int batch = batch(candidates);
+
+		double bestDistance = Double.POSITIVE_INFINITY;
+		Continuous best = null;
+
+		// * The position in the run at which the next batch starts
+		Position start = new Position();
+
+		for(long first = 0; first < candidates; first += batch)
+		{
+			int size = (int) Math.min(batch, candidates - first);
+			Batch current = new Batch(size);
+
+			Position next = scan(run, start, first, step, current);
+
+			for(int t = 0; t < size; t++)
+				if(current.distances[t] < bestDistance)
+				{
+					bestDistance = current.distances[t];
+					best = new Continuous(current.xMins[t], current.exponents[t]);
+				}
+
+			start = next;
+		}
+
+		return best;
+	}
+
+	/**
+	 * Estimates the exponent for a given xMin.
+	 *
+	 * @param xMin
+	 * @return
+	 */
+	public Continuous fit(double xMin)
+	{
+		Run run = merge();
+
+		RunReader reader = run.reader(0, readBuffer());
+		try
+		{
+			long n = 0;
+			double logSum = 0.0;
+			while(reader.next())
+				if(reader.value >= xMin)
+				{
+					n += reader.count;
+					logSum += reader.count * Math.log(reader.value);
+				}
+
+			return new Continuous(xMin, 1.0 + n / (logSum - n * Math.log(xMin)));
+		} finally
+		{
+			reader.close();
+		}
+	}
+
+	/**
+	 * The KS distance between the model and the data.
+	 *
+	 * @param model
+	 * @return
+	 */
+	public double ksTest(Continuous model)
+	{
+		Run run = merge();
+
+		double xMin = model.xMin(), exponent = model.exponent();
+		int k = KS_CORRECT ? 1 : 0;
+
+		// * Count the tail
+		long n = 0;
+		RunReader reader = run.reader(0, readBuffer());
+		try
+		{
+			while(reader.next())
+				if(reader.value >= xMin)
+					n += reader.count;
+		} finally
+		{
+			reader.close();
+		}
+
+		double max = Double.NEGATIVE_INFINITY;
+
+		long below = 0;
+		reader = run.reader(0, readBuffer());
+		try
+		{
+			while(reader.next())
+			{
+				if(reader.value < xMin)
+					continue;
+
+				double plCDF = 1.0 - Math.pow(reader.value / xMin, - exponent + 1);
+				double first = (below + k) / (double) n,
+				       last  = (below + reader.count - 1 + k) / (double) n;
+
+				max = Math.max(max, Math.max(Math.abs(first - plCDF), Math.abs(last - plCDF)));
+				below += reader.count;
+			}
+		} finally
+		{
+			reader.close();
+		}
+
+		return max;
+	}
+
+	/**
+	 * The number of candidates evaluated per pass: as many as fit in the 
+	 * budget, after the read buffer.
+	 */
+	private int batch(long candidates)
+	{
+		return (int) Math.min(candidates, Math.max(1, (budget - readBuffer()) / CANDIDATE));
+	}
+
+	/**
+	 * The size of the buffer for reading the merged run.
+	 */
+	private int readBuffer()
+	{
+		return (int) Math.min(1 << 16, budget / 4);
+	}
+
+	/**
+	 * Deletes the files on disk.
+	 */
+	@Override
+	public void close()
+	{
+		for(Run run : runs)
+			run.file.delete();
+
+		runs.clear();
+		buffer = null;
+		buffered = 0;
+	}
+
+	/**
+	 * The candidates for xMin evaluated in a single pass.
+	 */
+	private static class Batch
+	{
+		double[] xMins, exponents, distances;
+		long[] tails, belows;
+
+		public Batch(int size)
+		{
+			xMins = new double[size];
+			exponents = new double[size];
+			distances = new double[size];
+			tails = new long[size];
+			belows = new long[size];
+
+			Arrays.fill(distances, Double.NEGATIVE_INFINITY);
+		}
+	}
+
+	/**
+	 * A record index in the merged run, with the number of points before it
+	 * and the (compensated) sum of their logarithms.
+	 */
+	private static class Position
+	{
+		long index = 0, prefix = 0;
+		double logSum = 0.0, compensation = 0.0;
+
+		public Position copy()
+		{
+			Position copy = new Position();
+			copy.index = index;
+			copy.prefix = prefix;
+			copy.logSum = logSum;
+			copy.compensation = compensation;
+
+			return copy;
+		}
+
+		/**
+		 * Moves past a record.
+		 */
+		public void advance(double value, long count)
+		{
+			double term = count * Math.log(value) - compensation;
+			double sum = logSum + term;
+			compensation = (sum - logSum) - term;
+			logSum = sum;
+
+			prefix += count;
+			index++;
+		}
+	}
+
+	/**
+	 * Evaluates the candidates with indices first, first + 1, ... (in units
+	 * of step) in a single pass over the run, starting at the first of them.
+	 * Returns the position of the first candidate of the next batch.
+	 */
+	private Position scan(Run run, Position start, long first, long step, Batch batch)
+	{
+		int size = batch.xMins.length, k = KS_CORRECT ? 1 : 0;
+		long n = run.total;
+		double logSum = run.logSum;
+
+		Position position = start.copy(), next = null;
+		int active = 0;
+
+		RunReader reader = run.reader(position.index, readBuffer());
+		try
+		{
+			while(reader.next())
+			{
+				double value = reader.value;
+				long count = reader.count;
+
+				// * Activate the next candidate when we reach it
+				if(active < size && position.index == (first + active) * step)
+				{
+					long tail = n - position.prefix;
+					double tailLogSum = logSum - position.logSum;
+
+					batch.xMins[active] = value;
+					batch.exponents[active] = 1.0 + tail / (tailLogSum - tail * Math.log(value));
+					batch.tails[active] = tail;
+					batch.belows[active] = position.prefix;
+					active++;
+				}
+
+				if(next == null && position.index == (first + size) * step)
+					next = position.copy();
+
+				for(int t = 0; t < active; t++)
+				{
+					double plCDF = 1.0 - Math.pow(value / batch.xMins[t], - batch.exponents[t] + 1);
+
+					long below = position.prefix - batch.belows[t];
+					double tail = batch.tails[t];
+					double diff = Math.max(
+							Math.abs((below + k) / tail - plCDF),
+							Math.abs((below + count - 1 + k) / tail - plCDF));
+
+					if(diff > batch.distances[t])
+						batch.distances[t] = diff;
+				}
+
+				position.advance(value, count);
+			}
+		} finally
+		{
+			reader.close();
+		}
+
+		return next == null ? position : next;
+	}
+
+	/**
+	 * Writes the buffered values to disk as a sorted run.
+	 */
+	private void spill()
+	{
+		if(buffered == 0)
+			return;
+
+		Arrays.sort(buffer, 0, buffered);
+
+		RunWriter writer = new RunWriter(ioBuffer(1));
+		try
+		{
+			for(int i = 0; i < buffered; i++)
+				writer.write(buffer[i], 1);
+		} finally
+		{
+			writer.close();
+		}
+
+		runs.add(writer.run());
+		buffered = 0;
+	}
+
+	/**
+	 * Merges all runs into one, and returns it.
+	 */
+	private Run merge()
+	{
+		spill();
+		buffer = null;
+
+		if(runs.isEmpty())
+		{
+			RunWriter writer = new RunWriter(ioBuffer(1));
+			writer.close();
+			runs.add(writer.run());
+		}
+
+		while(runs.size() > 1)
+		{
+			int size = Math.min(fanIn(), runs.size());
+			List<Run> group = new ArrayList<Run>(runs.subList(0, size));
+
+			Run merged = merge(group);
+
+			runs.subList(0, size).clear();
+			runs.add(merged);
+
+			for(Run run : group)
+				run.file.delete();
+		}
+
+		return runs.get(0);
+	}
+
+	private Run merge(List<Run> group)
+	{
+		int ioBuffer = ioBuffer(group.size() + 1);
+
+		PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>();
+		RunWriter writer = new RunWriter(ioBuffer);
+		try
+		{
+			for(Run run : group)
+			{
+				RunReader reader = run.reader(0, ioBuffer);
+				if(reader.next())
+					queue.add(reader);
+				else
+					reader.close();
+			}
+
+			while(! queue.isEmpty())
+			{
+				RunReader reader = queue.poll();
+				writer.write(reader.value, reader.count);
+
+				if(reader.next())
+					queue.add(reader);
+				else
+					reader.close();
+			}
+		} finally
+		{
+			for(RunReader reader : queue)
+				reader.close();
+			writer.close();
+		}
+
+		return writer.run();
+	}
+
+	/**
+	 * The number of runs merged at once: at most FAN_IN, and few enough that
+	 * their io buffers and that of the output fit in half the budget.
+	 */
+	private int fanIn()
+	{
+		return (int) Math.max(2, Math.min(FAN_IN, budget / 2 / MIN_IO_BUFFER - 1));
+	}
+
+	/**
+	 * The size of the io buffers when the given number of files are open
+	 * at once
+	 */
+	private int ioBuffer(int files)
+	{
+		return (int) Math.max(MIN_IO_BUFFER, Math.min(1 << 20, budget / 2 / files));
+	}
+
+	private File createFile()
+	{
+		try
+		{
+			return File.createTempFile("powerlaws-run", ".bin", directory);
+		} catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * A sorted file of distinct values and their counts.
+	 */
+	private static class Run
+	{
+		File file;
+		long distinct, total;
+		double logSum;
+
+		public RunReader reader(long index, int ioBuffer)
+		{
+			return new RunReader(this, index, ioBuffer);
+		}
+	}
+
+	/**
+	 * Writes distinct values in ascending order, merging the counts of equal
+	 * successive values.
+	 */
+	private class RunWriter
+	{
+		private Run run = new Run();
+		private DataOutputStream out;
+
+		private boolean pending = false;
+		private double value;
+		private long count;
+		private double compensation = 0.0;
+
+		public RunWriter(int ioBuffer)
+		{
+			run.file = createFile();
+			try
+			{
+				out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run.file), ioBuffer));
+			} catch(IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		public void write(double value, long count)
+		{
+			if(pending && Double.compare(value, this.value) == 0)
+			{
+				this.count += count;
+				return;
+			}
+
+			flush();
+
+			pending = true;
+			this.value = value;
+			this.count = count;
+		}
+
+		private void flush()
+		{
+			if(! pending)
+				return;
+
+			try
+			{
+				out.writeDouble(value);
+				out.writeLong(count);
+			} catch(IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+
+			run.distinct++;
+			run.total += count;
+
+			double term = count * Math.log(value) - compensation;
+			double sum = run.logSum + term;
+			compensation = (sum - run.logSum) - term;
+			run.logSum = sum;
+
+			pending = false;
+		}
+
+		public void close()
+		{
+			try
+			{
+				flush();
+				out.close();
+			} catch(IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		public Run run()
+		{
+			return run;
+		}
+	}
+
+	/**
+	 * Reads the records of a run, starting at a given index.
+	 */
+	private static class RunReader implements Comparable<RunReader>
+	{
+		private DataInputStream in;
+		private long remaining;
+
+		double value;
+		long count;
+
+		public RunReader(Run run, long index, int ioBuffer)
+		{
+			remaining = run.distinct - index;
+			try
+			{
+				FileInputStream stream = new FileInputStream(run.file);
+				stream.getChannel().position(index * RECORD);
+
+				in = new DataInputStream(new BufferedInputStream(stream, ioBuffer));
+			} catch(IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		public boolean next()
+		{
+			if(remaining <= 0)
+				return false;
+
+			try
+			{
+				value = in.readDouble();
+				count = in.readLong();
+			} catch(EOFException e)
+			{
+				throw new IllegalStateException("Unexpected end of run file.", e);
+			} catch(IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+
+			remaining--;
+			return true;
+		}
+
+		public void close()
+		{
+			try
+			{
+				in.close();
+			} catch(IOException e)
+			{
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public int compareTo(RunReader other)
+		{
+			return Double.compare(value, other.value);
+		}
+	}
+}
@@ -7,7 +7,12 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import nl.peterbloem.util.Series;
@@ -28,13 +33,25 @@ public class Functions
 	 * This implementation was ported from the cephes math library as included 
 	 * in the scipy library (scipy/special/cephes/zeta.c)
 	 * 
-	 * TODO: memoize for low integer values
+	 * Values are memoized in PowerLaws.zetaCache, if it is set.
 	 * 
 	 * @param s
 	 * @param k
 	 * @return
 	 */
 	public static double zeta(double x, double q)
+	{
+		ZetaCache cache = PowerLaws.zetaCache;
+		if(cache != null)
+			return cache.zeta(x, q);
+		
+		return zetaUncached(x, q);
+	}
+	
+	/**
+	 * The Hurwitz zeta function, computed without consulting the cache.
+	 */
+	static double zetaUncached(double x, double q)
 	{
 		// * Check arguments
 		if(x == 1.0)
@@ -93,6 +110,80 @@ public class Functions
 		return s;
 	}
 	
+	/**
+	 * The derivative of the Hurwitz zeta function with respect to its first 
+	 * argument. 
+	 * 
+	 * This follows the same Euler-Maclaurin summation as zeta(x, q), 
+	 * differentiating each term analytically.
+	 * 
+	 * @param x
+	 * @param q
+	 * @return
+	 */
+	public static double zetaDerivative(double x, double q)
+	{
+		// * Check arguments
+		if(x == 1.0)
+			return Double.NEGATIVE_INFINITY;
+		if(q < 1.0)
+			return Double.NaN;
+		
+		double ds = - Math.log(q) * pow(q, -x);
+		double a = q;
+		double b = 0.0, db = 0.0;
+		
+		int i = 0;
+		
+		boolean done = false;
+		while( (i < 9 || a <= 9.0) && ! done)
+		{
+			i++;
+			
+			a++;
+			b = pow(a, -x);
+			db = - Math.log(a) * b;
+			ds += db;
+			
+			if(abs(db/ds) < EPSILON)
+				done = true;
+		}
+		
+		double k = 0.0;
+		double w = a;
+		double lw = Math.log(w);
+		
+		ds += - lw * b * w / (x - 1.0) - b * w / ((x - 1.0) * (x - 1.0));
+		ds -= 0.5 * db;
+		
+		// * a is the rising factorial x (x+1) ... and h the sum of the 
+		//   reciprocals of its factors, so that its derivative is a * h
+		a = 1.0;
+		double h = 0.0;
+
+		double t, dt;
+		for(i = 0; i < 12 && ! done; i ++)
+		{
+			a *= x + k;
+			h += 1.0 / (x + k);
+			b /= w;
+			t = a * b / m[i];
+			dt = t * (h - lw);
+			ds += dt;
+			
+			if(abs(dt/ds) < EPSILON)
+				done = true;
+			
+			k += 1.0;
+			a *= x + k;
+			h += 1.0 / (x + k);
+			b /= w;
+			k += 1.0;
+		}
+		
+		return ds;
+	}
+	
 	private static double m[] = {
 		 12.0,
 		-720.0,
@@ -237,6 +328,218 @@ public class Functions
 		return list;
 	}
 	
+	/**
+	 * The quantile function (inverse cdf) of the standard normal 
+	 * distribution. 
+	 * 
+	 * This uses the rational approximation by Peter Acklam, which has a 
+	 * relative error below 1.15E-9. 
+	 * 
+	 * @param p
+	 * @return
+	 */
+	public static double normalQuantile(double p)
+	{
+		if(p <= 0.0)
+			return Double.NEGATIVE_INFINITY;
+		if(p >= 1.0)
+			return Double.POSITIVE_INFINITY;
+		
+		double low = 0.02425, high = 1.0 - low;
+		
+		if(p < low)
+		{
+			double q = sqrt(-2.0 * Math.log(p));
+			return polynomial(q, normalC) / (polynomial(q, normalD) * q + 1.0);
+		} 
+		
+		if(p > high)
+		{
+			double q = sqrt(-2.0 * Math.log(1.0 - p));
+			return - polynomial(q, normalC) / (polynomial(q, normalD) * q + 1.0);
+		}
+		
+		double q = p - 0.5, r = q * q;
+		return polynomial(r, normalA) * q / (polynomial(r, normalB) * r + 1.0);
+	}
+	
+	private static double[] normalA = {
+			-3.969683028665376e+01,  2.209460984245205e+02,
+			-2.759285104469687e+02,  1.383577518672690e+02,
+			-3.066479806614716e+01,  2.506628277459239e+00 };
+	
+	private static double[] normalB = {
+			-5.447609879822406e+01,  1.615858368580409e+02,
+			-1.556989798598866e+02,  6.680131188771972e+01,
+			-1.328068155288572e+01 };
+	
+	private static double[] normalC = {
+			-7.784894002430293e-03, -3.223964580411365e-01,
+			-2.400758277161838e+00, -2.549732539343734e+00,
+			 4.374664141464968e+00,  2.938163982698783e+00 };
+	
+	private static double[] normalD = {
+			 7.784695709041462e-03,  3.224671290700398e-01,
+			 2.445134137142996e+00,  3.754408661907416e+00 };
+	
+	/**
+	 * The Wilson score interval for a binomial proportion. 
+	 * 
+	 * @param successes
+	 * @param trials
+	 * @param z The quantile of the standard normal distribution corresponding 
+	 *   to the required confidence (eg. 1.96 for a two-sided 95% interval).
+	 * @return An array containing the lower and upper bound.
+	 */
+	public static double[] wilson(int successes, int trials, double z)
+	{
+		double n = trials, p = successes / n;
+		double z2 = z * z;
+		
+		double center = (p + z2 / (2.0 * n)) / (1.0 + z2 / n);
+		double half = z / (1.0 + z2 / n) * sqrt(p * (1.0 - p) / n + z2 / (4.0 * n * n));
+		
+		return new double[]{max(0.0, center - half), min(1.0, center + half)};
+	}
+	
+	/**
+	 * Draws from a binomial distribution: the number of successes in n 
+	 * independent trials with success probability p. 
+	 * 
+	 * While n is large, the problem is halved with a beta-distributed order 
+	 * statistic (Knuth, TAOCP vol. 2, 3.4.1), after which the remainder is 
+	 * drawn by inversion. The expected time is O(log n).
+	 * 
+	 * @param n
+	 * @param p
+	 * @param random
+	 * @return
+	 */
+	public static long binomial(long n, double p, Random random)
+	{
+		long result = 0;
+		while(true)
+		{
+			if(n == 0 || p <= 0.0)
+				return result;
+			if(p >= 1.0)
+				return result + n;
+			
+			if(n * min(p, 1.0 - p) < BINOMIAL_INVERSION)
+				return result + binomialInversion(n, p, random);
+			
+			// * x is the a-th smallest of n uniform draws. If it is below p, 
+			//   the a smallest are all successes, and the others are uniform 
+			//   over (x, 1). Otherwise, the a - 1 smallest are uniform over 
+			//   (0, x), and the rest are failures.
+			long a = 1 + n / 2, b = n + 1 - a;
+			double x = beta(a, b, random);
+			
+			if(x < p)
+			{
+				result += a;
+				n = b - 1;
+				p = (p - x) / (1.0 - x);
+			} else
+			{
+				n = a - 1;
+				p = p / x;
+			}
+		}
+	}
+	
+	/**
+	 * The value of n * p below which binomial(...) uses inversion. 
+	 */
+	private static final double BINOMIAL_INVERSION = 10.0;
+	
+	/**
+	 * Binomial draw by sequential search of the cdf, in expected time O(np)
+	 */
+	private static long binomialInversion(long n, double p, Random random)
+	{
+		if(p > 0.5)
+			return n - binomialInversion(n, 1.0 - p, random);
+		
+		double s = p / (1.0 - p), a = (n + 1) * s;
+		double r = exp(n * log1p(-p));
+		double u = random.nextDouble();
+		
+		long x = 0;
+		while(u > r && x < n)
+		{
+			u -= r;
+			x++;
+			r *= a / x - s;
+		}
+		
+		return x;
+	}
+	
+	/**
+	 * Draws from a beta distribution with parameters a, b >= 1.
+	 */
+	private static double beta(double a, double b, Random random)
+	{
+		double x = gamma(a, random), y = gamma(b, random);
+		
+		return x / (x + y);
+	}
+	
+	/**
+	 * Draws from a gamma distribution with the given shape (at least 1) and 
+	 * scale 1 (Marsaglia and Tsang, 2000).
+	 */
+	private static double gamma(double shape, Random random)
+	{
+		double d = shape - 1.0 / 3.0, c = 1.0 / sqrt(9.0 * d);
+		
+		while(true)
+		{
+			double x = random.nextGaussian(), v = 1.0 + c * x;
+			if(v <= 0.0)
+				continue;
+			
+			v = v * v * v;
+			double u = random.nextDouble();
+			
+			if(Math.log(u) < 0.5 * x * x + d - d * v + d * Math.log(v))
+				return d * v;
+		}
+	}
+	
+	/**
+	 * Runs the given tasks on the executor and returns their results in the 
+	 * order of the tasks. Exceptions thrown by a task are rethrown.
+	 * 
+	 * @param executor
+	 * @param tasks
+	 * @return
+	 */
+	public static <R> List<R> invokeAll(ExecutorService executor, List<? extends Callable<R>> tasks)
+	{
+		List<R> results = new ArrayList<R>(tasks.size());
+		try
+		{
+			for(Future<R> future : executor.invokeAll(tasks))
+				results.add(future.get());
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for tasks to finish.", e);
+		} catch (ExecutionException e)
+		{
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			if(e.getCause() instanceof Error)
+				throw (Error) e.getCause();
+			
+			throw new IllegalStateException(e.getCause());
+		}
+		
+		return results;
+	}
+	
 	/**
 	 * Shorthand for the global logger
 	 * @return
@@ -262,6 +565,39 @@ public class Functions
 		return sum/num;
 	}	
 	
+	public static double mean(double[] values)
+	{
+		double sum = 0.0;
+		double num = 0.0;
+		
+		for(double v : values)
+			if(!Double.isNaN(v))
+			{
+				sum += v; 
+				num ++;
+			}
+		
+		return sum/num;
+	}
+	
+	public static double standardDeviation(double[] values)
+	{
+		double mean = mean(values);
+		double num = 0.0;
+		
+		double varSum = 0.0;
+		for(double v : values)
+			if(!Double.isNaN(v))
+			{
+				double diff = mean - v;
+				varSum += diff * diff;
+				num++;
+			}
+
+		double variance = varSum/(num - 1);
+		return Math.sqrt(variance);
+	}
+	
 	public static double standardDeviation(List<? extends Number> values)
 	{
 		double mean = mean(values);
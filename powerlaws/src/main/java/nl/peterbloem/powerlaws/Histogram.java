@@ -0,0 +1,614 @@
+package nl.peterbloem.powerlaws;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * A sorted dataset, stored as its distinct values. For each distinct value we
+ * store the size of the tail starting at that value (the number of points
+ * greater than or equal to it) and the sum of the logarithms of the points in
+ * that tail.
+ *
+ * These suffix sums allow the maximum likelihood estimators to be computed
+ * for any xMin in constant time, after a binary search for the start of the
+ * tail.
+ * 
+ * Histograms are serializable and can be merged, so that a dataset that is
+ * split over several partitions can be summarized per partition. Merging is
+ * exact and associative: the merged histogram is identical to the histogram of
+ * the concatenated data, and so are the fits and KS tests computed from it.
+ *
+ * @author Peter
+ *
+ */
+public class Histogram implements Serializable
+{
+	private static final long serialVersionUID = -4163720562541431930L;
+
+	private double[] values;
+
+	// * Both arrays have one more element than values, so that the tail
+	//   starting beyond the last value is empty.
+	private long[] tails;
+	private double[] logSums;
+
+	// * The number of distinct values. The arrays of a histogram that is reused
+	//   as a buffer (see Histogram(int)) may be longer.
+	private transient int size;
+
+	public Histogram(Collection<? extends Number> data)
+	{
+		this(toArray(data));
+	}
+
+	/**
+	 * Creates a histogram from an array of data. Note that the array is sorted
+	 * in place.
+	 *
+	 * @param data
+	 */
+	public Histogram(double[] data)
+	{
+		this(data, false);
+	}
+
+	/**
+	 * Creates a histogram from an array of data, which is sorted in place 
+	 * unless it is in ascending order already.
+	 *
+	 * @param data
+	 * @param sorted Whether the data is in ascending order.
+	 */
+	Histogram(double[] data, boolean sorted)
+	{
+		if(! sorted)
+			Arrays.sort(data);
+
+		// * Count the distinct values
+		int m = 0;
+		for(int i = 0; i < data.length; i++)
+			if(i == 0 || Double.compare(data[i - 1], data[i]) != 0)
+				m++;
+
+		values = new double[m];
+		long[] counts = new long[m];
+
+		int j = -1;
+		for(int i = 0; i < data.length; i++)
+		{
+			if(i == 0 || Double.compare(data[i - 1], data[i]) != 0)
+				values[++j] = data[i];
+			counts[j]++;
+		}
+
+		suffixSums(counts);
+	}
+
+	/**
+	 * Creates a histogram from a frequency table: each value occurs as many
+	 * times as its count. The values need not be sorted or distinct, and values
+	 * with count zero are ignored.
+	 *
+	 * @param values
+	 * @param counts
+	 */
+	public Histogram(double[] values, long[] counts)
+	{
+		if(values.length != counts.length)
+			throw new IllegalArgumentException("The number of values ("+values.length+") should equal the number of counts ("+counts.length+").");
+
+		for(long count : counts)
+			if(count < 0)
+				throw new IllegalArgumentException("Counts should not be negative (found "+count+").");
+
+		int n = values.length;
+
+		// * Find the order of the values, skipping the sort if they are sorted
+		//   already
+		int[] order = new int[n];
+		boolean sorted = true;
+		for(int i = 0; i < n; i++)
+		{
+			order[i] = i;
+			if(i > 0 && Double.compare(values[i - 1], values[i]) > 0)
+				sorted = false;
+		}
+
+		if(! sorted)
+		{
+			Integer[] boxed = new Integer[n];
+			for(int i = 0; i < n; i++)
+				boxed[i] = i;
+
+			Arrays.sort(boxed, new Comparator<Integer>()
+			{
+				@Override
+				public int compare(Integer first, Integer second)
+				{
+					return Double.compare(values[first], values[second]);
+				}
+			});
+
+			for(int i = 0; i < n; i++)
+				order[i] = boxed[i];
+		}
+
+		// * Count the distinct values with nonzero counts
+		int m = 0;
+		double last = Double.NaN;
+		for(int i = 0; i < n; i++)
+		{
+			double value = values[order[i]];
+			if(counts[order[i]] > 0 && (m == 0 || Double.compare(last, value) != 0))
+			{
+				m++;
+				last = value;
+			}
+		}
+
+		this.values = new double[m];
+		long[] merged = new long[m];
+
+		int j = -1;
+		for(int i = 0; i < n; i++)
+		{
+			double value = values[order[i]];
+			long count = counts[order[i]];
+			if(count == 0)
+				continue;
+
+			if(j < 0 || Double.compare(this.values[j], value) != 0)
+				this.values[++j] = value;
+			merged[j] += count;
+		}
+
+		suffixSums(merged);
+	}
+
+	/**
+	 * Creates a histogram from a frequency table of integer values, such as a
+	 * degree distribution.
+	 *
+	 * @param values
+	 * @param counts
+	 */
+	public Histogram(int[] values, long[] counts)
+	{
+		this(toDoubles(values), counts);
+	}
+
+	private static double[] toDoubles(int[] values)
+	{
+		double[] doubles = new double[values.length];
+		for(int i = 0; i < values.length; i++)
+			doubles[i] = values[i];
+
+		return doubles;
+	}
+
+	/**
+	 * Creates a histogram from the first m of the given distinct values, in
+	 * ascending order, and the first m counts. The values array is used 
+	 * directly if it has length m.
+	 */
+	private Histogram(double[] values, long[] counts, int m)
+	{
+		this.values = m == values.length ? values : Arrays.copyOf(values, m);
+		suffixSums(counts);
+	}
+
+	/**
+	 * Creates an empty histogram with room for the given number of distinct
+	 * values. It is meant to be passed as the target of resample(...) or 
+	 * merge(...), which overwrite it and reuse its arrays while they are large
+	 * enough.
+	 *
+	 * @param capacity
+	 */
+	Histogram(int capacity)
+	{
+		values = new double[capacity];
+		tails = new long[capacity + 1];
+		logSums = new double[capacity + 1];
+	}
+
+	/**
+	 * Returns the histogram of the data of this histogram and the other
+	 * together. Neither histogram is changed.
+	 *
+	 * @param other
+	 * @return
+	 */
+	public Histogram merge(Histogram other)
+	{
+		return merge(other, null).trimmed();
+	}
+
+	/**
+	 * Merges this histogram and the other into the target, which is 
+	 * overwritten and returned. If the target is null, a new histogram is 
+	 * created. The target should be neither of the merged histograms.
+	 */
+	Histogram merge(Histogram other, Histogram target)
+	{
+		int m = size(), o = other.size();
+
+		target = reserve(target, m + o);
+		double[] values = target.values;
+		// * The counts are collected in the tails, and summed in place
+		long[] counts = target.tails;
+
+		int i = 0, j = 0, k = 0;
+		while(i < m || j < o)
+		{
+			int comparison = 
+					i == m ? 1 : j == o ? -1 : Double.compare(value(i), other.value(j));
+
+			counts[k] = 0;
+			if(comparison <= 0)
+			{
+				values[k] = value(i);
+				counts[k] += count(i++);
+			}
+			if(comparison >= 0)
+			{
+				values[k] = other.value(j);
+				counts[k] += other.count(j++);
+			}
+
+			k++;
+		}
+
+		// * The log-sums are recomputed from the counts, rather than added, so
+		//   that they are summed in the same order as for the concatenated data
+		target.sums(k);
+		return target;
+	}
+
+	/**
+	 * Merges this histogram and the first length of the given points, which 
+	 * should be in ascending order, into the target, which is overwritten and
+	 * returned. If the target is null, a new histogram is created. This takes 
+	 * linear time.
+	 *
+	 * @param sorted
+	 * @param length
+	 * @param target
+	 * @return
+	 */
+	Histogram merge(double[] sorted, int length, Histogram target)
+	{
+		int m = size();
+
+		target = reserve(target, m + length);
+		double[] values = target.values;
+		long[] counts = target.tails;
+
+		int i = 0, j = 0, k = -1;
+		while(i < m || j < length)
+		{
+			double value;
+			long count;
+			if(j == length || (i < m && Double.compare(value(i), sorted[j]) <= 0))
+			{
+				value = value(i);
+				count = count(i++);
+			} else
+			{
+				value = sorted[j++];
+				count = 1;
+			}
+
+			if(k < 0 || Double.compare(values[k], value) != 0)
+			{
+				values[++k] = value;
+				counts[k] = 0;
+			}
+			counts[k] += count;
+		}
+
+		target.sums(k + 1);
+		return target;
+	}
+
+	/**
+	 * Merges any number of histograms.
+	 *
+	 * @param histograms
+	 * @return
+	 */
+	public static Histogram merge(Collection<Histogram> histograms)
+	{
+		Histogram merged = new Histogram(new double[0], new long[0], 0);
+
+		for(Histogram histogram : histograms)
+			merged = merged.merge(histogram);
+
+		return merged;
+	}
+
+	/**
+	 * Draws a sample of the given size, with replacement, from the data, and
+	 * returns it as a histogram. This takes O(size() log(number)) time,
+	 * regardless of the total number of points.
+	 *
+	 * @param number
+	 * @param random
+	 * @return
+	 */
+	public Histogram resample(long number, Random random)
+	{
+		return resample(number, 0, size(), random);
+	}
+
+	/**
+	 * Draws a sample of the given size, with replacement, from the points
+	 * whose values have indices from (inclusive) to to (exclusive).
+	 *
+	 * @param number
+	 * @param from
+	 * @param to
+	 * @param random
+	 * @return
+	 */
+	public Histogram resample(long number, int from, int to, Random random)
+	{
+		return resample(number, from, to, random, new long[to - from]);
+	}
+
+	/**
+	 * Draws a sample as above, using the given buffer (of length at least 
+	 * to - from) for the counts. The buffer is overwritten, and can be reused 
+	 * for the next sample.
+	 */
+	Histogram resample(long number, int from, int to, Random random, long[] buffer)
+	{
+		return resample(number, from, to, random, buffer, null);
+	}
+
+	/**
+	 * Draws a sample as above into the target, which is overwritten and 
+	 * returned. If the target is null, a new histogram is created. The target
+	 * should not be this histogram.
+	 */
+	Histogram resample(long number, int from, int to, Random random, long[] buffer, Histogram target)
+	{
+		if(number > 0 && tails[from] == tails[to])
+			throw new IllegalArgumentException("Cannot sample from an empty range ("+from+", "+to+").");
+
+		// * Draw the counts from a multinomial distribution, one value at a
+		//   time, conditional on the number of points left to draw
+		long remaining = number;
+		int m = 0, last = from;
+		for(int i = from; i < to && remaining > 0; i++)
+		{
+			double p = count(i) / (double)(tails[i] - tails[to]);
+			long count = Functions.binomial(remaining, p, random);
+
+			buffer[i - from] = count;
+			remaining -= count;
+			last = i + 1;
+
+			if(count > 0)
+				m++;
+		}
+
+		// * Keep the values that were drawn
+		target = reserve(target, m);
+		int j = 0;
+		for(int i = from; i < last; i++)
+			if(buffer[i - from] > 0)
+			{
+				target.values[j] = values[i];
+				target.tails[j++] = buffer[i - from];
+			}
+
+		target.sums(m);
+		return target;
+	}
+
+	/**
+	 * Returns the target, or a new histogram if it is null, with room for at
+	 * least m distinct values. The contents of the target are not kept.
+	 */
+	private static Histogram reserve(Histogram target, int m)
+	{
+		if(target == null)
+			return new Histogram(m);
+
+		if(target.values.length < m)
+		{
+			int capacity = Math.max(m, 2 * target.values.length);
+
+			target.values = new double[capacity];
+			target.tails = new long[capacity + 1];
+			target.logSums = new double[capacity + 1];
+		}
+
+		return target;
+	}
+
+	/**
+	 * Returns this histogram if its arrays have no room to spare, or a copy 
+	 * that has none.
+	 */
+	Histogram trimmed()
+	{
+		if(values.length == size)
+			return this;
+
+		Histogram trimmed = new Histogram(size);
+		System.arraycopy(values, 0, trimmed.values, 0, size);
+		System.arraycopy(tails, 0, trimmed.tails, 0, size + 1);
+		System.arraycopy(logSums, 0, trimmed.logSums, 0, size + 1);
+		trimmed.size = size;
+
+		return trimmed;
+	}
+
+	private void suffixSums(long[] counts)
+	{
+		int m = values.length;
+
+		tails = new long[m + 1];
+		logSums = new double[m + 1];
+		System.arraycopy(counts, 0, tails, 0, m);
+
+		sums(m);
+	}
+
+	/**
+	 * Computes the tail sizes and log-sums of the first m values, from their 
+	 * counts, which are stored in the first m elements of tails.
+	 */
+	private void sums(int m)
+	{
+		size = m;
+		tails[m] = 0;
+		logSums[m] = 0.0;
+
+		// * The logarithms are computed first, so that they can be vectorized
+		Kernels.INSTANCE.logs(values, tails, logSums, 0, m);
+
+		for(int j = m - 1; j >= 0; j--)
+		{
+			tails[j] += tails[j + 1];
+			logSums[j] += logSums[j + 1];
+		}
+	}
+
+	/**
+	 * Histograms are written without any room to spare.
+	 */
+	private Object writeReplace()
+	{
+		return trimmed();
+	}
+
+	private void readObject(ObjectInputStream in)
+		throws IOException, ClassNotFoundException
+	{
+		in.defaultReadObject();
+		size = values.length;
+	}
+
+	private static double[] toArray(Collection<? extends Number> data)
+	{
+		double[] array = new double[data.size()];
+		int i = 0;
+		for(Number datum : data)
+			array[i++] = datum.doubleValue();
+
+		return array;
+	}
+
+	/**
+	 * The number of distinct values in the data.
+	 * @return
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * The total number of points in the data.
+	 * @return
+	 */
+	public long total()
+	{
+		return tails[0];
+	}
+
+	/**
+	 * The i-th distinct value, in ascending order.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public double value(int i)
+	{
+		return values[i];
+	}
+
+	/**
+	 * The number of times the i-th distinct value occurs in the data.
+	 *
+	 * @param i
+	 * @return
+	 */
+	public long count(int i)
+	{
+		return tails[i] - tails[i + 1];
+	}
+
+	/**
+	 * The number of points greater than or equal to the i-th distinct value.
+	 *
+	 * @param i An index between 0 and size() (inclusive). For size(), the tail
+	 * 	is empty.
+	 * @return
+	 */
+	public long tailSize(int i)
+	{
+		return tails[i];
+	}
+
+	/**
+	 * The sum of the natural logarithms of all points greater than or equal
+	 * to the i-th distinct value.
+	 *
+	 * @param i An index between 0 and size() (inclusive). For size(), the tail
+	 * 	is empty.
+	 * @return
+	 */
+	public double tailLogSum(int i)
+	{
+		return logSums[i];
+	}
+
+	/**
+	 * The distinct values. The array is not copied, and may be longer than
+	 * size().
+	 */
+	double[] values()
+	{
+		return values;
+	}
+
+	/**
+	 * The tail sizes, with one more element than values(). The array is not
+	 * copied.
+	 */
+	long[] tails()
+	{
+		return tails;
+	}
+
+	/**
+	 * Returns the index of the smallest distinct value greater than or equal
+	 * to x, or size() if there is no such value.
+	 *
+	 * @param x
+	 * @return
+	 */
+	public int tailStart(double x)
+	{
+		int lower = 0, upper = size;
+		while(lower < upper)
+		{
+			int mid = (lower + upper) >>> 1;
+			if(values[mid] < x)
+				lower = mid + 1;
+			else
+				upper = mid;
+		}
+
+		return lower;
+	}
+}
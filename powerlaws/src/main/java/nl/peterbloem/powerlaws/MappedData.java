@@ -0,0 +1,298 @@
+package nl.peterbloem.powerlaws;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A read-only view of a dataset stored as a flat binary file of 
+ * little-endian doubles, ints or longs. 
+ * 
+ * The file is memory-mapped, so opening it takes no time and the data lives 
+ * in the page cache rather than on the heap. The data can be read one value 
+ * at a time, or summarized as a Histogram, which is what the fits, the KS 
+ * test, the significance test and the uncertainty estimates use. No boxed 
+ * values are ever created, but to build the histogram, files of doubles 
+ * (and integer files with many distinct values) are copied into an array on
+ * the heap, see histogram().
+ * 
+ * @author Peter
+ *
+ */
+public class MappedData
+{
+	public static enum Type
+	{
+		DOUBLE(8), INT(4), LONG(8);
+		
+		private int bytes;
+		
+		private Type(int bytes)
+		{
+			this.bytes = bytes;
+		}
+		
+		/**
+		 * The number of bytes per value.
+		 * @return
+		 */
+		public int bytes()
+		{
+			return bytes;
+		}
+	}
+	
+	/**
+	 * The number of values per mapped buffer. A single buffer can map at most 
+	 * 2GB, so larger files are mapped in several parts.
+	 */
+	private static final int CHUNK = 1 << 27;
+	
+	private Type type;
+	private long size;
+	private ByteBuffer[] buffers;
+	
+	/**
+	 * Maps the given file. 
+	 * 
+	 * @param file
+	 * @param type
+	 * @throws IOException If the file cannot be read, or its length is not a 
+	 * 	multiple of the size of the type.
+	 */
+	public MappedData(File file, Type type)
+		throws IOException
+	{
+		this.type = type;
+		
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			long length = channel.size();
+			
+			if(length % type.bytes() != 0)
+				throw new IOException("The length of file "+file+" ("+length+" bytes) is not a multiple of "+type.bytes()+".");
+			
+			size = length / type.bytes();
+			
+			int n = (int)((size + CHUNK - 1) / CHUNK);
+			buffers = new ByteBuffer[n];
+			for(int i = 0; i < n; i++)
+			{
+				long from = (long) i * CHUNK * type.bytes();
+				long bytes = Math.min((long) CHUNK * type.bytes(), length - from);
+				
+				buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY, from, bytes)
+						.order(ByteOrder.LITTLE_ENDIAN);
+			}
+		} finally
+		{
+			// * The mappings remain valid after the channel is closed
+			raf.close();
+		}
+	}
+	
+	public Type type()
+	{
+		return type;
+	}
+	
+	/**
+	 * The number of values in the file.
+	 * @return
+	 */
+	public long size()
+	{
+		return size;
+	}
+	
+	/**
+	 * Returns the i-th value in the file. Longs of more than 53 bits are 
+	 * rounded to the nearest double; use getLong(i) to read them exactly.
+	 * 
+	 * @param i
+	 * @return
+	 */
+	public double get(long i)
+	{
+		ByteBuffer buffer = buffers[(int)(i / CHUNK)];
+		int index = (int)(i % CHUNK) * type.bytes();
+		
+		switch(type)
+		{
+			case INT:
+				return buffer.getInt(index);
+			case LONG:
+				return buffer.getLong(index);
+			default:
+				return buffer.getDouble(index);
+		}
+	}
+	
+	/**
+	 * Returns the i-th value in a file of ints or longs.
+	 * 
+	 * @param i
+	 * @return
+	 */
+	public long getLong(long i)
+	{
+		ByteBuffer buffer = buffers[(int)(i / CHUNK)];
+		int index = (int)(i % CHUNK) * type.bytes();
+		
+		switch(type)
+		{
+			case INT:
+				return buffer.getInt(index);
+			case LONG:
+				return buffer.getLong(index);
+			default:
+				throw new IllegalStateException("The file contains doubles, not integers.");
+		}
+	}
+	
+	/**
+	 * Copies the values with indices from from (inclusive) to to (exclusive) 
+	 * into the given array, starting at offset.
+	 */
+	public void get(long from, long to, double[] target, int offset)
+	{
+		for(long i = from; i < to; i++)
+			target[offset++] = get(i);
+	}
+	
+	/**
+	 * Summarizes the data as a histogram. 
+	 * 
+	 * For integer data, the distinct values are counted in a primitive hash 
+	 * table, so that the memory used depends only on the number of distinct 
+	 * values. If there turn out to be many, and for doubles, the data is 
+	 * copied into an array on the heap (8 bytes per point) and sorted 
+	 * instead. 
+	 * 
+	 * The histogram stores its values as doubles, so a long that a double 
+	 * cannot represent exactly (one of more than 53 bits) causes an 
+	 * exception rather than being rounded.
+	 * 
+	 * @return
+	 */
+	public Histogram histogram()
+	{
+		if(type != Type.DOUBLE)
+		{
+			Histogram histogram = count(size / 4);
+			if(histogram != null)
+				return histogram;
+		}
+		
+		if(size > Integer.MAX_VALUE - 8)
+			throw new IllegalStateException("The data has too many points ("+size+") to be sorted in memory.");
+		
+		double[] data = new double[(int) size];
+		if(type == Type.DOUBLE)
+			get(0, size, data, 0);
+		else
+			for(int i = 0; i < data.length; i++)
+				data[i] = exact(getLong(i));
+		
+		return new Histogram(data);
+	}
+	
+	/**
+	 * The given long as a double, or an exception if a double cannot 
+	 * represent it exactly.
+	 */
+	private static double exact(long value)
+	{
+		double result = value;
+		
+		// * 2^63 rounds back to Long.MAX_VALUE when cast to a long 
+		if((long) result != value || value == Long.MAX_VALUE)
+			throw new IllegalStateException("The value "+value+" cannot be represented exactly as a double.");
+		
+		return result;
+	}
+	
+	/**
+	 * Counts the distinct values by open addressing, or returns null if there
+	 * are more than the given number.
+	 */
+	private Histogram count(long maxDistinct)
+	{
+		int capacity = 1024;
+		long[] keys = new long[capacity], counts = new long[capacity];
+		int distinct = 0;
+		
+		for(long i = 0; i < size; i++)
+		{
+			long key = getLong(i);
+			
+			int slot = slot(key, capacity);
+			while(counts[slot] != 0 && keys[slot] != key)
+				slot = (slot + 1) & (capacity - 1);
+			
+			if(counts[slot] == 0)
+			{
+				keys[slot] = key;
+				distinct++;
+				
+				if(distinct > maxDistinct && distinct > 1024)
+					return null;
+			}
+			counts[slot]++;
+			
+			// * Grow when more than half full
+			if(2 * distinct > capacity)
+			{
+				long[] oldKeys = keys, oldCounts = counts;
+				capacity *= 2;
+				keys = new long[capacity];
+				counts = new long[capacity];
+				
+				for(int j = 0; j < oldKeys.length; j++)
+					if(oldCounts[j] != 0)
+					{
+						int s = slot(oldKeys[j], capacity);
+						while(counts[s] != 0)
+							s = (s + 1) & (capacity - 1);
+						
+						keys[s] = oldKeys[j];
+						counts[s] = oldCounts[j];
+					}
+			}
+		}
+		
+		// * Sort the distinct values, and their counts with them 
+		long[] sorted = new long[distinct];
+		int k = 0;
+		for(int j = 0; j < capacity; j++)
+			if(counts[j] != 0)
+				sorted[k++] = keys[j];
+		Arrays.sort(sorted);
+		
+		double[] values = new double[distinct];
+		long[] sortedCounts = new long[distinct];
+		for(int j = 0; j < distinct; j++)
+		{
+			int slot = slot(sorted[j], capacity);
+			while(keys[slot] != sorted[j])
+				slot = (slot + 1) & (capacity - 1);
+			
+			values[j] = exact(sorted[j]);
+			sortedCounts[j] = counts[slot];
+		}
+		
+		return new Histogram(values, sortedCounts);
+	}
+	
+	private static int slot(long key, int capacity)
+	{
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int)(hash >>> 32) & (capacity - 1);
+	}
+}
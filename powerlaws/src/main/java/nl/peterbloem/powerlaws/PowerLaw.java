@@ -2,6 +2,10 @@ package nl.peterbloem.powerlaws;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.DoubleStream;
 
 import nl.peterbloem.util.Generator;
 
@@ -67,6 +71,59 @@ public interface PowerLaw<T extends Number> extends Generator<T>
 	 * @return
 	 */		
 	public List<T> generate(Collection<? extends T> observed, int number);
+	
+	/**
+	 * Generates a dataset like the observed data is a semi parametric manner, 
+	 * using the given source of randomness.
+	 * 
+	 * @param observed
+	 * @param number 
+	 * @param random
+	 * @return
+	 */		
+	public List<T> generate(Collection<? extends T> observed, int number, Random random);
+
+	/**
+	 * Generates a dataset like the observed one, given as a histogram, in the
+	 * same way as generate(observed, observed.total(), random). The result is
+	 * also a histogram, so that datasets with few distinct values can be 
+	 * generated without creating each point.
+	 * 
+	 * @param observed
+	 * @param random
+	 * @return
+	 */
+	public Histogram generate(Histogram observed, Random random);
+	
+	/**
+	 * Fills the array with values drawn from this distribution. 
+	 * 
+	 * @param target
+	 * @param random
+	 */
+	public void generate(double[] target, Random random);
+	
+	/**
+	 * Fills the array between from (inclusive) and to (exclusive) with values
+	 * drawn from this distribution. The values are the same as those drawn by 
+	 * calling generate(random) for each element.
+	 * 
+	 * @param target
+	 * @param from
+	 * @param to
+	 * @param random
+	 */
+	public void generate(double[] target, int from, int to, Random random);
+	
+	/**
+	 * Returns a stream of the given number of values drawn from this 
+	 * distribution. The stream can be run in parallel.
+	 * 
+	 * @param number
+	 * @param random
+	 * @return
+	 */
+	public DoubleStream doubles(long number, Random random);
 
 	/**
 	 * Perform the Kolmogorov-Smirnov test on the given data.
@@ -76,6 +133,54 @@ public interface PowerLaw<T extends Number> extends Generator<T>
 	 */
 	public double ksTest(Collection<? extends T> data);
 	
+	/**
+	 * Perform the Kolmogorov-Smirnov test on the data summarized by the given
+	 * histogram.
+	 * 
+	 * @param data
+	 * @return
+	 */
+	public double ksTest(Histogram data);
+	
+	/**
+	 * Perform the Kolmogorov-Smirnov test on the tail of the given histogram
+	 * starting at the distinct value with index from. All values from that 
+	 * index onward should be greater than or equal to xMin, and those below it 
+	 * should not be.
+	 * 
+	 * This version works directly on the sorted primitive data and allocates
+	 * nothing, so it can be used when evaluating many candidate models for
+	 * the same data.
+	 * 
+	 * @param data
+	 * @param from
+	 * @return
+	 */
+	public double ksTest(Histogram data, int from);
+	
+	/**
+	 * Calculates the significance for data given as a histogram, for instance 
+	 * a frequency table of values and counts.
+	 * 
+	 * @param data
+	 * @param n The number of trials.
+	 * @return
+	 */
+	public double significance(Histogram data, int n);
+	
+	/**
+	 * Calculates the significance for data given as a histogram. The 
+	 * synthetic datasets are generated as histograms by generate(Histogram, 
+	 * Random). 
+	 * 
+	 * @param data
+	 * @param n The number of trials.
+	 * @param dataSamples
+	 * @param executor
+	 * @param random
+	 * @return
+	 */
+	public double significance(Histogram data, int n, int dataSamples, ExecutorService executor, Random random);
 	
 	/**
 	 * Calculates the significance of of this model as a hypothesis for the 
@@ -114,6 +219,166 @@ public interface PowerLaw<T extends Number> extends Generator<T>
 
 	public double significance(Collection<? extends T> data, double epsilon, int dataSamples);
 	
+	/**
+	 * Calculates the significance as described above, dividing the trials 
+	 * over the threads of the given executor. The result is the same for any 
+	 * executor. 
+	 * 
+	 * @param data
+	 * @param sampleSize
+	 * @param dataSamples
+	 * @param executor
+	 * @return
+	 */
+	public double significance(Collection<? extends T> data, int sampleSize, int dataSamples, ExecutorService executor);
+	
+	public double significance(Collection<? extends T> data, double epsilon, int dataSamples, ExecutorService executor);
+	
+	/**
+	 * Calculates the significance as described above, dividing the trials 
+	 * over the threads of the given executor and drawing all random numbers 
+	 * from streams split off from the given random. The result depends only 
+	 * on the state of the random.
+	 * 
+	 * @param data
+	 * @param sampleSize
+	 * @param dataSamples
+	 * @param executor
+	 * @param random
+	 * @return
+	 */
+	public double significance(Collection<? extends T> data, int sampleSize, int dataSamples, ExecutorService executor, Random random);
+	
+	/**
+	 * A sequential version of the significance test, which stops as soon as 
+	 * it is clear whether the p-value is above or below a given threshold 
+	 * (like 0.1). 
+	 * 
+	 * The trials are the same as for significance(...). After every batch of 
+	 * trials, a confidence interval for the p-value is computed. If it lies 
+	 * entirely above or below the threshold, the test stops. Otherwise it 
+	 * continues up to the number of trials required for accuracy epsilon, 
+	 * n = (1/4) * epsilon^-2.
+	 * 
+	 * @param data
+	 * @param threshold
+	 * @param epsilon
+	 * @return The estimate of the p-value, its confidence interval and the
+	 * 	number of trials used.
+	 */
+	public Significance sequentialSignificance(Collection<? extends T> data, double threshold, double epsilon);
+	
+	/**
+	 * A sequential version of the significance test, as described above.
+	 * 
+	 * @param data
+	 * @param threshold The threshold for the decision.
+	 * @param confidence The required confidence for the decision (eg. 0.99).
+	 * @param maxTrials The maximum number of trials. 
+	 * @param dataSamples
+	 * @param executor
+	 * @param random
+	 * @return The estimate of the p-value, its confidence interval and the
+	 * 	number of trials used.
+	 */
+	public Significance sequentialSignificance(
+			Collection<? extends T> data, double threshold, double confidence,
+			int maxTrials, int dataSamples, ExecutorService executor, Random random);
+	
+	/**
+	 * Starts a significance test in the background, with PowerLaws.executor 
+	 * and PowerLaws.random, and without a deadline.
+	 * 
+	 * @param data
+	 * @param n The number of trials.
+	 * @return A handle that can be used to follow, cancel or wait for the test.
+	 */
+	public SignificanceFuture significanceAsync(Collection<? extends T> data, int n);
+	
+	/**
+	 * Starts a significance test in the background. The trials draw from the 
+	 * same streams as those of significance(data, n, dataSamples, executor, 
+	 * random), so if all trials complete, the result is the same.
+	 * 
+	 * @param data
+	 * @param n The number of trials.
+	 * @param dataSamples
+	 * @param timeout The time after which no more trials are started, or -1 
+	 * 	for no deadline. 
+	 * @param unit The unit of the timeout.
+	 * @param executor
+	 * @param random
+	 * @return A handle that can be used to follow, cancel or wait for the test.
+	 */
+	public SignificanceFuture significanceAsync(
+			Collection<? extends T> data, int n, int dataSamples, 
+			long timeout, TimeUnit unit, ExecutorService executor, Random random);
+	
+	/**
+	 * Estimates the uncertainty of the parameters of this model as a fit to 
+	 * the given data, by bootstrapping. Based on Clauset 2007 section 3.5.
+	 * 
+	 * A number of datasets are sampled with replacement from the data and a 
+	 * model is fitted to each in the same way as this one. The uncertainties 
+	 * are the standard deviations of the resulting exponents, xMins and tail
+	 * sizes (the number of points in the data above each xMin).
+	 * 
+	 * @param data
+	 * @param bootstrapSize The number of datasets to sample (typically 1000 
+	 *   to 10000).
+	 * @return
+	 */
+	public Uncertainties uncertainties(Collection<? extends T> data, int bootstrapSize);
+	
+	/**
+	 * Estimates the uncertainty as described above, dividing the work over 
+	 * the threads of the given executor. The result is the same for any 
+	 * executor. 
+	 * 
+	 * @param data
+	 * @param bootstrapSize
+	 * @param dataSamples The number of candidates for xMin when fitting each 
+	 *   sample, or -1 to use all.
+	 * @param executor
+	 * @return
+	 */
+	public Uncertainties uncertainties(Collection<? extends T> data, int bootstrapSize, int dataSamples, ExecutorService executor);
+	
+	/**
+	 * Estimates the uncertainty as described above, drawing all random 
+	 * numbers from streams split off from the given random.
+	 * 
+	 * @param data
+	 * @param bootstrapSize
+	 * @param dataSamples
+	 * @param executor
+	 * @param random
+	 * @return
+	 */
+	public Uncertainties uncertainties(Collection<? extends T> data, int bootstrapSize, int dataSamples, ExecutorService executor, Random random);
+	
+	/**
+	 * Estimates the uncertainty for data given as a histogram, for instance a 
+	 * frequency table of values and counts.
+	 * 
+	 * @param data
+	 * @param bootstrapSize
+	 * @return
+	 */
+	public Uncertainties uncertainties(Histogram data, int bootstrapSize);
+	
+	/**
+	 * Estimates the uncertainty for data given as a histogram. 
+	 * 
+	 * @param data
+	 * @param bootstrapSize
+	 * @param dataSamples
+	 * @param executor
+	 * @param random
+	 * @return
+	 */
+	public Uncertainties uncertainties(Histogram data, int bootstrapSize, int dataSamples, ExecutorService executor, Random random);
+	
 	/**
 	 * Represents the intermediate stage of fitting a power law to data. 
 	 * 
@@ -142,6 +407,39 @@ public interface PowerLaw<T extends Number> extends Generator<T>
 		 */
 		public P fitSampled(int samples);
 		
+		/**
+		 * Searches for the xMin with the smallest KS distance, evaluating only
+		 * a fraction of the candidates. The search starts from a coarse grid 
+		 * of candidates, spaced both evenly over the distinct values and 
+		 * logarithmically over their range, and refines around the best 
+		 * candidates found until there is no candidate left to evaluate 
+		 * between them and their neighbors.
+		 * 
+		 * @return
+		 */
+		public P fitAdaptive();
+		
+		/**
+		 * Searches for the xMin with the smallest KS distance, evaluating only
+		 * a fraction of the candidates.
+		 * 
+		 * @param grid The size of the initial grid of candidates.
+		 * @param tolerance The search stops when a round of refinement 
+		 * 	improves the best KS distance by less than this value. With 0, it 
+		 * 	stops only when the neighborhoods of the best candidates have been 
+		 * 	searched exhaustively.
+		 * @return
+		 */
+		public P fitAdaptive(int grid, double tolerance);
+		
+		/**
+		 * The number of candidates for xMin whose KS distance was computed by 
+		 * the last call to fit(), fitSampled() or fitAdaptive().
+		 * 
+		 * @return
+		 */
+		public int evaluated();
+		
 		/**
 		 * Estimate a power law from the data with appropriate xMin.
 		 * 
@@ -0,0 +1,62 @@
+package nl.peterbloem.powerlaws;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the progress of a single run for a ProgressListener. The trials 
+ * report without locking, from the threads that run them. 
+ * 
+ * @author Peter
+ *
+ */
+class Progress
+{
+	// * The id of the next run
+	private static final AtomicLong runs = new AtomicLong();
+	
+	private final ProgressListener listener;
+	private final ProgressListener.Job job;
+	private final long run;
+	private final int total;
+	private final AtomicInteger completed = new AtomicInteger();
+	private final long start;
+	
+	private Progress(ProgressListener listener, ProgressListener.Job job, int total)
+	{
+		this.listener = listener;
+		this.job = job;
+		this.run = runs.getAndIncrement();
+		this.total = total;
+		this.start = System.nanoTime();
+		
+		listener.started(job, run, total);
+	}
+	
+	/**
+	 * Starts tracking a run for PowerLaws.listener, or returns null if there 
+	 * is no listener.
+	 */
+	public static Progress start(ProgressListener.Job job, int total)
+	{
+		ProgressListener listener = PowerLaws.listener;
+		if(listener == null)
+			return null;
+		
+		return new Progress(listener, job, total);
+	}
+	
+	public void trial(int index, double distance, PowerLaw<?> model, long nanos)
+	{
+		int completed = this.completed.incrementAndGet();
+		
+		listener.trial(new TrialEvent(
+				job, run, index, distance, model.xMin().doubleValue(), model.exponent(), 
+				nanos, completed, total, System.nanoTime() - start));
+	}
+	
+	public void finished()
+	{
+		listener.finished(job, run, completed.get());
+	}
+}
@@ -0,0 +1,57 @@
+package nl.peterbloem.powerlaws;
+
+/**
+ * Receives progress reports from long-running computations: the trials of a 
+ * significance test and the replicates of a bootstrap uncertainty estimate.
+ * 
+ * The listener used is PowerLaws.listener. When it is null (the default), no 
+ * events are created and no timing is done.
+ * 
+ * Calls to a listener may be concurrent: each trial reports from the thread 
+ * that ran it, and several runs may be in progress at the same time. Each run 
+ * is given an id, which is passed to started(...) and finished(...) and 
+ * carried by the events of its trials, so that the events of concurrent runs 
+ * can be told apart. Implementations should be thread-safe, and return 
+ * quickly, since they are called from the threads that run the trials.
+ * 
+ * @author Peter
+ *
+ */
+public interface ProgressListener
+{
+	/**
+	 * The kinds of computation that report progress.
+	 */
+	public static enum Job
+	{
+		SIGNIFICANCE,
+		UNCERTAINTIES
+	}
+	
+	/**
+	 * Called before the first trial of a run.
+	 * 
+	 * @param job
+	 * @param run The id of the run.
+	 * @param trials The number of trials that will be performed. For a 
+	 * 	sequential significance test, this is the maximum number of trials.
+	 */
+	public void started(Job job, long run, int trials);
+	
+	/**
+	 * Called when a trial has finished. Trials are reported in the order in 
+	 * which they finish, which is not necessarily the order of their indices.
+	 * 
+	 * @param event
+	 */
+	public void trial(TrialEvent event);
+	
+	/**
+	 * Called after the last trial of a run.
+	 * 
+	 * @param job
+	 * @param run The id of the run.
+	 * @param trials The number of trials that were performed.
+	 */
+	public void finished(Job job, long run, int trials);
+}
@@ -0,0 +1,77 @@
+package nl.peterbloem.powerlaws;
+
+/**
+ * The result of a significance test that was stopped after a number of trials: 
+ * the estimate of the p-value and a confidence interval around it.
+ * 
+ * @author Peter
+ *
+ */
+public class Significance
+{
+	private int above;
+	private int trials;
+	private double lower;
+	private double upper;
+	
+	public Significance(int above, int trials, double lower, double upper)
+	{
+		this.above = above;
+		this.trials = trials;
+		this.lower = lower;
+		this.upper = upper;
+	}
+
+	/**
+	 * The estimate of the p-value: the proportion of trials with a KS 
+	 * distance at least as great as that of the model. 
+	 * @return
+	 */
+	public double p()
+	{
+		return above / (double) trials;
+	}
+	
+	/**
+	 * The lower bound of the confidence interval for the p-value.
+	 * @return
+	 */
+	public double lower()
+	{
+		return lower;
+	}
+
+	/**
+	 * The upper bound of the confidence interval for the p-value.
+	 * @return
+	 */
+	public double upper()
+	{
+		return upper;
+	}
+
+	/**
+	 * The number of trials performed.
+	 * @return
+	 */
+	public int trials()
+	{
+		return trials;
+	}
+
+	/**
+	 * The number of trials with a KS distance at least as great as that of 
+	 * the model.
+	 * @return
+	 */
+	public int above()
+	{
+		return above;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return p() + " [" + lower + ", " + upper + "] (" + trials + " trials)";
+	}
+}
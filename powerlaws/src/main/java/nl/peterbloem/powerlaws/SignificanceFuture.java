@@ -0,0 +1,227 @@
+package nl.peterbloem.powerlaws;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A handle on a significance test that runs in the background, as returned by 
+ * PowerLaw.significanceAsync(...).
+ * 
+ * The test can be stopped early, either by cancelling it or by a deadline. 
+ * Trials that have not started by then are skipped; trials that are running 
+ * are finished (they cannot be interrupted). The trials completed so far are 
+ * never lost: current() returns the running estimate of the p-value and its 
+ * confidence interval at any time, including after cancellation.
+ * 
+ * When the test stops at its deadline, or because the executor rejected 
+ * trials, it completes normally, and get() returns the estimate based on the
+ * trials that were completed. When it is 
+ * cancelled, get() throws a CancellationException, as for any Future.
+ * 
+ * @author Peter
+ *
+ */
+public class SignificanceFuture implements Future<Significance>
+{
+	private int total;
+	private long deadline;
+	private boolean hasDeadline;
+	private Progress progress;
+	
+	private int above = 0, trials = 0, ended = 0;
+	private boolean cancelled = false;
+	private Throwable failure = null;
+	
+	private CountDownLatch done = new CountDownLatch(1);
+	
+	/**
+	 * @param total The number of trials.
+	 * @param timeoutNanos The time after which no more trials are started, or 
+	 * 	a negative value for no deadline.
+	 * @param progress The progress of the run, or null.
+	 */
+	SignificanceFuture(int total, long timeoutNanos, Progress progress)
+	{
+		this.total = total;
+		this.hasDeadline = timeoutNanos >= 0;
+		this.deadline = System.nanoTime() + timeoutNanos;
+		this.progress = progress;
+		
+		if(total == 0)
+			end();
+	}
+	
+	/**
+	 * Whether a trial that is about to start should run.
+	 */
+	boolean proceed()
+	{
+		synchronized(this)
+		{
+			if(cancelled || failure != null)
+				return false;
+		}
+		
+		return ! hasDeadline || System.nanoTime() - deadline < 0;
+	}
+	
+	/**
+	 * Records a trial that was run.
+	 */
+	synchronized void trial(boolean aboveThreshold)
+	{
+		trials++;
+		if(aboveThreshold)
+			above++;
+	}
+	
+	/**
+	 * Records a trial that failed with an exception. 
+	 */
+	synchronized void failed(Throwable failure)
+	{
+		if(this.failure == null)
+			this.failure = failure;
+		
+		done.countDown();
+	}
+	
+	/**
+	 * Marks the end of a trial, whether it was run or skipped.
+	 */
+	synchronized void ended()
+	{
+		ended++;
+		if(ended == total)
+			end();
+	}
+	
+	/**
+	 * Marks the end of the given number of trials that were never submitted,
+	 * because the executor rejected them.
+	 */
+	synchronized void skipped(int number)
+	{
+		ended += number;
+		if(ended == total)
+			end();
+	}
+	
+	private void end()
+	{
+		if(progress != null)
+			progress.finished();
+		
+		done.countDown();
+	}
+	
+	/**
+	 * The estimate of the p-value and its confidence interval (with 
+	 * confidence AbstractPowerLaw.SEQUENTIAL_CONFIDENCE) from the trials 
+	 * completed so far.
+	 * 
+	 * @return
+	 */
+	public Significance current()
+	{
+		return current(AbstractPowerLaw.SEQUENTIAL_CONFIDENCE);
+	}
+	
+	/**
+	 * The estimate of the p-value and its confidence interval from the trials 
+	 * completed so far.
+	 * 
+	 * @param confidence
+	 * @return
+	 */
+	public synchronized Significance current(double confidence)
+	{
+		if(trials == 0)
+			return new Significance(0, 0, 0.0, 1.0);
+		
+		double z = Functions.normalQuantile(1.0 - (1.0 - confidence) / 2.0);
+		double[] interval = Functions.wilson(above, trials, z);
+		
+		return new Significance(above, trials, interval[0], interval[1]);
+	}
+	
+	/**
+	 * The number of trials completed so far.
+	 * @return
+	 */
+	public synchronized int trials()
+	{
+		return trials;
+	}
+	
+	/**
+	 * The number of trials requested.
+	 * @return
+	 */
+	public int total()
+	{
+		return total;
+	}
+	
+	/**
+	 * Stops the test: trials that have not started yet are skipped. Since the 
+	 * trials cannot be interrupted, mayInterruptIfRunning is ignored.
+	 */
+	@Override
+	public synchronized boolean cancel(boolean mayInterruptIfRunning)
+	{
+		if(isDone())
+			return false;
+		
+		cancelled = true;
+		done.countDown();
+		
+		return true;
+	}
+
+	@Override
+	public synchronized boolean isCancelled()
+	{
+		return cancelled;
+	}
+
+	@Override
+	public boolean isDone()
+	{
+		return done.getCount() == 0;
+	}
+
+	@Override
+	public Significance get() 
+		throws InterruptedException, ExecutionException
+	{
+		done.await();
+		
+		return result();
+	}
+
+	@Override
+	public Significance get(long timeout, TimeUnit unit)
+		throws InterruptedException, ExecutionException, TimeoutException
+	{
+		if(! done.await(timeout, unit))
+			throw new TimeoutException();
+		
+		return result();
+	}
+	
+	private synchronized Significance result()
+		throws ExecutionException
+	{
+		if(cancelled)
+			throw new CancellationException();
+		if(failure != null)
+			throw new ExecutionException(failure);
+		
+		return current();
+	}
+}
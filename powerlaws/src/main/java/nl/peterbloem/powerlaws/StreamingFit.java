@@ -0,0 +1,120 @@
+package nl.peterbloem.powerlaws;
+
+import java.io.Serializable;
+
+import nl.peterbloem.util.QuantileSketch;
+
+/**
+ * Fits a continuous power law to a stream of values in bounded memory.
+ *
+ * Values can be added one at a time or in batches. They are not stored, but
+ * summarized in a quantile sketch, whose retained values (each weighted by
+ * the number of values it represents) are used as a histogram of the data.
+ * The estimates of xMin, the exponent and the KS distance are those of the
+ * regular fit applied to this histogram. Since the ranks in the sketch are
+ * accurate to within a small fraction of the number of values (see
+ * QuantileSketch), so is the empirical cdf used by the KS test.
+ *
+ * Fits for different parts of a stream can be merged.
+ *
+ * @author Peter
+ *
+ */
+public class StreamingFit implements Serializable
+{
+	private static final long serialVersionUID = 3373960232917622766L;
+
+	private QuantileSketch sketch;
+
+	public StreamingFit()
+	{
+		this(QuantileSketch.DEFAULT_K);
+	}
+
+	/**
+	 * @param k The accuracy parameter of the quantile sketch. The memory used
+	 * 	grows linearly with k, the rank error shrinks as 1/k.
+	 */
+	public StreamingFit(int k)
+	{
+		sketch = new QuantileSketch(k);
+	}
+
+	public void add(double value)
+	{
+		sketch.add(value);
+	}
+
+	public void add(double[] values)
+	{
+		sketch.add(values);
+	}
+
+	public void add(double[] values, int from, int to)
+	{
+		sketch.add(values, from, to);
+	}
+
+	/**
+	 * Adds all values seen by the other fit to this one.
+	 *
+	 * @param other
+	 */
+	public void merge(StreamingFit other)
+	{
+		sketch.merge(other.sketch);
+	}
+
+	/**
+	 * The number of values added so far.
+	 * @return
+	 */
+	public long count()
+	{
+		return sketch.count();
+	}
+
+	/**
+	 * A histogram of the values retained by the sketch, weighted by the
+	 * number of values they represent.
+	 *
+	 * @return
+	 */
+	public Histogram histogram()
+	{
+		return new Histogram(sketch.values(), sketch.weights());
+	}
+
+	/**
+	 * Estimates the best power law for the values added so far.
+	 *
+	 * @return
+	 */
+	public Continuous fit()
+	{
+		return Continuous.fit(histogram()).fit();
+	}
+
+	/**
+	 * Estimates a power law with the given xMin for the values added so far.
+	 *
+	 * @param xMin
+	 * @return
+	 */
+	public Continuous fit(double xMin)
+	{
+		return Continuous.fit(histogram()).fit(xMin);
+	}
+
+	/**
+	 * The approximate KS distance between the given model and the values
+	 * added so far.
+	 *
+	 * @param model
+	 * @return
+	 */
+	public double ksTest(Continuous model)
+	{
+		return model.ksTest(histogram());
+	}
+}
@@ -0,0 +1,154 @@
+package nl.peterbloem.powerlaws;
+
+/**
+ * Reports a single finished trial of a significance test or bootstrap 
+ * replicate, together with the progress of the run it belongs to.
+ * 
+ * @author Peter
+ *
+ */
+public class TrialEvent
+{
+	private ProgressListener.Job job;
+	private long run;
+	private int index;
+	private double distance, xMin, exponent;
+	private long nanos;
+	private int completed, total;
+	private long runNanos;
+	
+	public TrialEvent(
+			ProgressListener.Job job, long run, int index, double distance, 
+			double xMin, double exponent, long nanos, int completed, int total, 
+			long runNanos)
+	{
+		this.job = job;
+		this.run = run;
+		this.index = index;
+		this.distance = distance;
+		this.xMin = xMin;
+		this.exponent = exponent;
+		this.nanos = nanos;
+		this.completed = completed;
+		this.total = total;
+		this.runNanos = runNanos;
+	}
+
+	public ProgressListener.Job job()
+	{
+		return job;
+	}
+
+	/**
+	 * The id of the run this trial belongs to. 
+	 * @return
+	 */
+	public long run()
+	{
+		return run;
+	}
+
+	/**
+	 * The index of the trial within its run.
+	 * @return
+	 */
+	public int index()
+	{
+		return index;
+	}
+
+	/**
+	 * The KS distance between the model fitted in this trial and the data it 
+	 * was fitted to (the synthetic data for a significance test, the 
+	 * resampled data for a bootstrap replicate).
+	 * 
+	 * @return
+	 */
+	public double distance()
+	{
+		return distance;
+	}
+
+	/**
+	 * The xMin of the model fitted in this trial.
+	 * @return
+	 */
+	public double xMin()
+	{
+		return xMin;
+	}
+
+	/**
+	 * The exponent of the model fitted in this trial.
+	 * @return
+	 */
+	public double exponent()
+	{
+		return exponent;
+	}
+
+	/**
+	 * The time taken by this trial, in nanoseconds.
+	 * @return
+	 */
+	public long nanos()
+	{
+		return nanos;
+	}
+
+	/**
+	 * The number of trials of the run that had finished when this one 
+	 * finished, including this one. Since trials report concurrently, a 
+	 * listener may receive the events of a run out of this order.
+	 * @return
+	 */
+	public int completed()
+	{
+		return completed;
+	}
+
+	/**
+	 * The number of trials in the run (for a sequential significance test, 
+	 * the maximum number).
+	 * @return
+	 */
+	public int total()
+	{
+		return total;
+	}
+
+	/**
+	 * The time since the run started, in nanoseconds.
+	 * @return
+	 */
+	public long runNanos()
+	{
+		return runNanos;
+	}
+	
+	/**
+	 * The average number of trials finished per second since the run started.
+	 * @return
+	 */
+	public double rate()
+	{
+		return completed / (runNanos * 1E-9);
+	}
+	
+	/**
+	 * An estimate of the time until the last trial of the run finishes, in 
+	 * nanoseconds, assuming the current rate.
+	 * @return
+	 */
+	public long remainingNanos()
+	{
+		return (long)((total - completed) * (runNanos / (double) completed));
+	}
+	
+	@Override
+	public String toString()
+	{
+		return job + " run " + run + " trial " + index + " (" + completed + " of " + total + "): " 
+				+ "distance " + distance + ", xMin " + xMin + ", exponent " + exponent;
+	}
+}
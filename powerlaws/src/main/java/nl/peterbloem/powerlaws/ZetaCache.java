@@ -0,0 +1,217 @@
+package nl.peterbloem.powerlaws;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe, size-bounded cache for values of the Hurwitz zeta function,
+ * keyed by both arguments.
+ *
+ * The cache is split into a fixed number of segments, each with its own lock,
+ * so that threads evaluating different arguments rarely wait for each other.
+ * When a segment is full, an entry is evicted according to the eviction
+ * policy. Since every segment holds at most its share of the capacity, the
+ * total size never exceeds the capacity.
+ *
+ * The cache used by Functions.zeta(double, double) is PowerLaws.zetaCache.
+ *
+ * @author Peter
+ *
+ */
+public class ZetaCache
+{
+	public static enum Eviction
+	{
+		/**
+		 * Evict the entry that was least recently used.
+		 */
+		LRU,
+		/**
+		 * Evict the entry that was added first. This is slightly cheaper
+		 * than LRU, since lookups do not reorder the entries.
+		 */
+		FIFO
+	}
+
+	private static final int SEGMENTS = 16;
+
+	private int capacity;
+	private Eviction eviction;
+	private Segment[] segments;
+
+	/**
+	 * @param capacity The maximum number of values held by the cache.
+	 * @param eviction The policy for choosing which value to evict when the
+	 *   cache is full.
+	 */
+	public ZetaCache(int capacity, Eviction eviction)
+	{
+		if(capacity < SEGMENTS)
+			throw new IllegalArgumentException("Capacity ("+capacity+") should be at least "+SEGMENTS+".");
+
+		this.capacity = capacity;
+		this.eviction = eviction;
+
+		segments = new Segment[SEGMENTS];
+		for(int i = 0; i < SEGMENTS; i++)
+			segments[i] = new Segment(capacity / SEGMENTS, eviction == Eviction.LRU);
+	}
+
+	/**
+	 * Returns the value of the Hurwitz zeta function for the given arguments,
+	 * computing it only if it is not in the cache.
+	 *
+	 * @param x
+	 * @param q
+	 * @return
+	 */
+	public double zeta(double x, double q)
+	{
+		Key key = new Key(x, q);
+		Segment segment = segments[(key.hashCode() >>> 16 ^ key.hashCode()) & (SEGMENTS - 1)];
+
+		synchronized(segment)
+		{
+			Double value = segment.get(key);
+			if(value != null)
+			{
+				segment.hits++;
+				return value;
+			}
+
+			segment.misses++;
+		}
+
+		// * Compute outside the lock. If two threads miss on the same key, both
+		//   compute the same value, which is harmless.
+		double value = Functions.zetaUncached(x, q);
+
+		synchronized(segment)
+		{
+			segment.put(key, value);
+		}
+
+		return value;
+	}
+
+	/**
+	 * The number of lookups that were answered from the cache.
+	 * @return
+	 */
+	public long hits()
+	{
+		long hits = 0;
+		for(Segment segment : segments)
+			synchronized(segment)
+			{
+				hits += segment.hits;
+			}
+
+		return hits;
+	}
+
+	/**
+	 * The number of lookups that required the value to be computed.
+	 * @return
+	 */
+	public long misses()
+	{
+		long misses = 0;
+		for(Segment segment : segments)
+			synchronized(segment)
+			{
+				misses += segment.misses;
+			}
+
+		return misses;
+	}
+
+	/**
+	 * The number of values currently held by the cache.
+	 * @return
+	 */
+	public int size()
+	{
+		int size = 0;
+		for(Segment segment : segments)
+			synchronized(segment)
+			{
+				size += segment.size();
+			}
+
+		return size;
+	}
+
+	public int capacity()
+	{
+		return capacity;
+	}
+
+	public Eviction eviction()
+	{
+		return eviction;
+	}
+
+	/**
+	 * Removes all values from the cache and resets the hit and miss counters.
+	 */
+	public void clear()
+	{
+		for(Segment segment : segments)
+			synchronized(segment)
+			{
+				segment.clear();
+				segment.hits = 0;
+				segment.misses = 0;
+			}
+	}
+
+	private static class Segment extends LinkedHashMap<Key, Double>
+	{
+		private static final long serialVersionUID = -2709018223066284484L;
+
+		private int capacity;
+		private long hits = 0, misses = 0;
+
+		public Segment(int capacity, boolean accessOrder)
+		{
+			super(16, 0.75f, accessOrder);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest)
+		{
+			return size() > capacity;
+		}
+	}
+
+	private static class Key
+	{
+		private double x, q;
+
+		public Key(double x, double q)
+		{
+			this.x = x;
+			this.q = q;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			long bits = Double.doubleToLongBits(x) * 31 + Double.doubleToLongBits(q);
+			return (int)(bits ^ (bits >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if(! (obj instanceof Key))
+				return false;
+
+			Key other = (Key) obj;
+			return Double.doubleToLongBits(x) == Double.doubleToLongBits(other.x)
+					&& Double.doubleToLongBits(q) == Double.doubleToLongBits(other.q);
+		}
+	}
+}
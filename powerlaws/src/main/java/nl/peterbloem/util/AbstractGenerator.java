@@ -2,6 +2,7 @@ package nl.peterbloem.util;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 public abstract class AbstractGenerator<P> implements Generator<P>
 {	
@@ -14,4 +15,14 @@ public abstract class AbstractGenerator<P> implements Generator<P>
 		
 		return points;
 	}
+	
+	@Override
+	public List<P> generate(int n, Random random)
+	{
+		List<P> points = new ArrayList<P>(n);
+		for(int i = 0; i < n; i++)
+			points.add(generate(random));
+		
+		return points;
+	}
 }
@@ -13,4 +13,21 @@ public interface Generator<P>
 	public P generate();	
 	
 	public List<P> generate(int n);
+	
+	/**
+	 * Generates a point, drawing all random numbers from the given random.
+	 * 
+	 * @param random
+	 * @return
+	 */
+	public P generate(Random random);
+	
+	/**
+	 * Generates n points, drawing all random numbers from the given random.
+	 * 
+	 * @param n
+	 * @param random
+	 * @return
+	 */
+	public List<P> generate(int n, Random random);
 }
@@ -0,0 +1,304 @@
+package nl.peterbloem.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A KLL quantile sketch (Karnin, Lang, Liberty 2016).
+ *
+ * The sketch summarizes a stream of values in O(k log(n/k)) memory. It stores
+ * a number of sorted levels of values, where each value at level h represents
+ * 2^h values of the stream. When a level exceeds its capacity, it is sorted and
+ * every other value (starting at a random offset) is promoted to the next
+ * level.
+ *
+ * The rank of any value, estimated from the sketch, differs from its true rank
+ * by at most epsilon * n with high probability, where epsilon is inversely
+ * proportional to k (about 0.35% for the default k = 1000). Sketches can be
+ * merged: the result summarizes the concatenation of both streams with the
+ * same guarantee.
+ *
+ * @author Peter
+ */
+public class QuantileSketch implements Serializable
+{
+	private static final long serialVersionUID = -6281003716546413574L;
+
+	public static final int DEFAULT_K = 1000;
+
+	// * The ratio between the capacities of successive levels
+	private static final double C = 2.0 / 3.0;
+
+	private int k;
+
+	private double[][] levels = new double[0][];
+	private int[] sizes = new int[0];
+
+	private int size = 0, maxSize = 0;
+	private long count = 0;
+
+	// * The state of the generator for the random offsets
+	private long state;
+
+	public QuantileSketch()
+	{
+		this(DEFAULT_K);
+	}
+
+	public QuantileSketch(int k)
+	{
+		this(k, 42);
+	}
+
+	/**
+	 * @param k The accuracy parameter: the capacity of the top level.
+	 * @param seed The seed for the random choices made during compaction.
+	 */
+	public QuantileSketch(int k, long seed)
+	{
+		if(k < 2)
+			throw new IllegalArgumentException("The parameter k ("+k+") should be at least 2.");
+
+		this.k = k;
+		this.state = seed;
+
+		grow();
+	}
+
+	public void add(double value)
+	{
+		append(0, value);
+		size++;
+		count++;
+
+		if(size >= maxSize)
+			compress();
+	}
+
+	public void add(double[] values)
+	{
+		add(values, 0, values.length);
+	}
+
+	/**
+	 * Adds the values in the given range of the array.
+	 *
+	 * @param values
+	 * @param from The first index (inclusive)
+	 * @param to The last index (exclusive)
+	 */
+	public void add(double[] values, int from, int to)
+	{
+		for(int i = from; i < to; i++)
+			add(values[i]);
+	}
+
+	/**
+	 * Adds all values summarized by the other sketch to this one. The other
+	 * sketch is not changed.
+	 *
+	 * @param other
+	 */
+	public void merge(QuantileSketch other)
+	{
+		while(levels.length < other.levels.length)
+			grow();
+
+		for(int h = 0; h < other.levels.length; h++)
+			for(int i = 0; i < other.sizes[h]; i++)
+				append(h, other.levels[h][i]);
+
+		count += other.count;
+		size = currentSize();
+
+		while(size >= maxSize)
+			compress();
+	}
+
+	/**
+	 * The number of values added to the sketch.
+	 *
+	 * @return
+	 */
+	public long count()
+	{
+		return count;
+	}
+
+	/**
+	 * The number of values retained by the sketch.
+	 * @return
+	 */
+	public int retained()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the retained values in ascending order. Values may occur more
+	 * than once.
+	 *
+	 * @return
+	 */
+	public double[] values()
+	{
+		return sorted()[0];
+	}
+
+	/**
+	 * Returns the weights of the values returned by values(): the number of
+	 * values in the stream each retained value represents. The weights sum to
+	 * count().
+	 *
+	 * @return
+	 */
+	public long[] weights()
+	{
+		double[][] sorted = sorted();
+
+		long[] weights = new long[sorted[1].length];
+		for(int i = 0; i < weights.length; i++)
+			weights[i] = (long) sorted[1][i];
+
+		return weights;
+	}
+
+	/**
+	 * Estimates the fraction of values in the stream that are less than or
+	 * equal to x.
+	 *
+	 * @param x
+	 * @return
+	 */
+	public double rank(double x)
+	{
+		long below = 0;
+		for(int h = 0; h < levels.length; h++)
+			for(int i = 0; i < sizes[h]; i++)
+				if(levels[h][i] <= x)
+					below += 1L << h;
+
+		return below / (double) count;
+	}
+
+	/**
+	 * Sorts the retained values together with their weights
+	 */
+	private double[][] sorted()
+	{
+		// * Sort the levels in place, and merge them
+		double[] values = new double[size], weights = new double[size];
+		int n = 0;
+		for(int h = 0; h < levels.length; h++)
+		{
+			Arrays.sort(levels[h], 0, sizes[h]);
+
+			double weight = (double)(1L << h);
+
+			// * merge level h into the first n values
+			int i = n - 1, j = sizes[h] - 1, t = n + sizes[h] - 1;
+			while(j >= 0)
+				if(i >= 0 && values[i] > levels[h][j])
+				{
+					values[t] = values[i];
+					weights[t--] = weights[i--];
+				} else
+				{
+					values[t] = levels[h][j--];
+					weights[t--] = weight;
+				}
+
+			n += sizes[h];
+		}
+
+		return new double[][]{values, weights};
+	}
+
+	private void grow()
+	{
+		int height = levels.length + 1;
+
+		levels = Arrays.copyOf(levels, height);
+		levels[height - 1] = new double[16];
+		sizes = Arrays.copyOf(sizes, height);
+
+		maxSize = 0;
+		for(int h = 0; h < height; h++)
+			maxSize += capacity(h);
+	}
+
+	private int capacity(int level)
+	{
+		int depth = levels.length - level - 1;
+		return (int) Math.ceil(Math.pow(C, depth) * k) + 1;
+	}
+
+	private void compress()
+	{
+		for(int h = 0; h < levels.length; h++)
+			if(sizes[h] >= capacity(h))
+			{
+				if(h + 1 >= levels.length)
+					grow();
+
+				compact(h);
+				size = currentSize();
+
+				return;
+			}
+	}
+
+	/**
+	 * Sorts level h and promotes every other value to level h + 1. If the
+	 * level contains an odd number of values, the largest stays behind.
+	 */
+	private void compact(int h)
+	{
+		double[] level = levels[h];
+		int n = sizes[h];
+		Arrays.sort(level, 0, n);
+
+		int pairs = n / 2;
+		int offset = nextBit();
+
+		for(int i = 0; i < pairs; i++)
+			append(h + 1, level[2 * i + offset]);
+
+		if(n % 2 == 1)
+		{
+			level[0] = level[n - 1];
+			sizes[h] = 1;
+		} else
+			sizes[h] = 0;
+	}
+
+	private void append(int h, double value)
+	{
+		if(sizes[h] == levels[h].length)
+			levels[h] = Arrays.copyOf(levels[h], 2 * levels[h].length);
+
+		levels[h][sizes[h]++] = value;
+	}
+
+	private int currentSize()
+	{
+		int size = 0;
+		for(int s : sizes)
+			size += s;
+
+		return size;
+	}
+
+	/**
+	 * A random bit from a SplitMix64 generator
+	 */
+	private int nextBit()
+	{
+		long z = (state += 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z = z ^ (z >>> 31);
+
+		return (int)(z >>> 63);
+	}
+}
@@ -0,0 +1,213 @@
+package nl.peterbloem.util;
+
+import java.util.Random;
+import java.util.function.LongToDoubleFunction;
+import java.util.function.LongUnaryOperator;
+import java.util.stream.DoubleStream;
+import java.util.stream.LongStream;
+
+/**
+ * A Random that uses the algorithm of SplittableRandom (SplitMix64), and
+ * produces the same values as a SplittableRandom with the same seed.
+ *
+ * Unlike java.util.Random, this class does not synchronize its state, so it
+ * should not be shared between threads. Instead, a task that is divided over
+ * several threads should give each part its own child stream with split().
+ * If the children are split off in a fixed order, the numbers each of them
+ * produces do not depend on the order in which the parts are executed.
+ *
+ * The state is kept here rather than in a SplittableRandom, which cannot be
+ * serialized, so that a serialized copy continues exactly where this
+ * generator was, and serializing it does not change its state.
+ *
+ * @author Peter
+ */
+public class SplitRandom extends Random
+{
+	private static final long serialVersionUID = 4226407451434380521L;
+
+	// * The state of SplitMix64: the seed is advanced by gamma (which is odd)
+	//   for each value
+	private long seed, gamma;
+
+	public SplitRandom(long seed)
+	{
+		// * This calls setSeed(seed)
+		super(seed);
+	}
+
+	private SplitRandom(long seed, long gamma)
+	{
+		super(0L);
+		this.seed = seed;
+		this.gamma = gamma;
+	}
+
+	/**
+	 * Returns a new generator that shares no state with this one. This
+	 * advances the state of this generator.
+	 *
+	 * @return
+	 */
+	public SplitRandom split()
+	{
+		return new SplitRandom(nextLong(), mixGamma(nextSeed()));
+	}
+
+	/**
+	 * Returns the given generator if it is a SplitRandom, and otherwise a
+	 * SplitRandom seeded by it.
+	 *
+	 * @param random
+	 * @return
+	 */
+	public static SplitRandom of(Random random)
+	{
+		if(random instanceof SplitRandom)
+			return (SplitRandom) random;
+
+		return new SplitRandom(random.nextLong());
+	}
+
+	@Override
+	public void setSeed(long seed)
+	{
+		// * This is also called by the constructor of Random
+		this.seed = seed;
+		this.gamma = GOLDEN_GAMMA;
+	}
+
+	@Override
+	protected int next(int bits)
+	{
+		return nextInt() >>> (32 - bits);
+	}
+
+	@Override
+	public int nextInt()
+	{
+		return mix32(nextSeed());
+	}
+
+	@Override
+	public int nextInt(int bound)
+	{
+		if(bound <= 0)
+			throw new IllegalArgumentException("Bound ("+bound+") must be positive.");
+
+		int r = nextInt(), m = bound - 1;
+
+		// * A power of two
+		if((bound & m) == 0)
+			return r & m;
+
+		// * Reject the values that would make the result biased
+		for(int u = r >>> 1; u + m - (r = u % bound) < 0; u = nextInt() >>> 1);
+
+		return r;
+	}
+
+	@Override
+	public long nextLong()
+	{
+		return mix(nextSeed());
+	}
+
+	@Override
+	public double nextDouble()
+	{
+		return (nextLong() >>> 11) * DOUBLE_UNIT;
+	}
+
+	@Override
+	public boolean nextBoolean()
+	{
+		return nextInt() < 0;
+	}
+
+	/**
+	 * A stream of uniform random numbers that can be run in parallel without
+	 * contention. The i-th value is a hash of i and a seed drawn from this
+	 * generator, so the stream produces the same values whether it is run in
+	 * parallel or not. This advances the state of this generator.
+	 */
+	@Override
+	public DoubleStream doubles(long streamSize)
+	{
+		return seeds(streamSize).mapToDouble(new LongToDoubleFunction()
+		{
+			@Override
+			public double applyAsDouble(long seed)
+			{
+				return (seed >>> 11) * DOUBLE_UNIT;
+			}
+		});
+	}
+
+	/**
+	 * A stream of random longs, computed in the same way as the values of
+	 * doubles(). Use them to seed a generator per element when drawing an
+	 * element takes a variable number of random numbers. This advances the
+	 * state of this generator.
+	 *
+	 * @param streamSize
+	 * @return
+	 */
+	public LongStream seeds(long streamSize)
+	{
+		if(streamSize < 0)
+			throw new IllegalArgumentException("Stream size ("+streamSize+") cannot be negative.");
+
+		final long seed = nextLong();
+
+		return LongStream.range(0, streamSize).map(new LongUnaryOperator()
+		{
+			@Override
+			public long applyAsLong(long index)
+			{
+				return mix(seed + (index + 1) * GOLDEN_GAMMA);
+			}
+		});
+	}
+
+	private long nextSeed()
+	{
+		return seed += gamma;
+	}
+
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+	/**
+	 * The finalizer of SplittableRandom (variant 13 of Stafford's mix).
+	 */
+	private static long mix(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * The 32-bit finalizer of SplittableRandom (variant 4 of Stafford's mix).
+	 */
+	private static int mix32(long z)
+	{
+		z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+		return (int)(((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+	}
+
+	/**
+	 * The gamma of a child stream, as in SplittableRandom: an odd number
+	 * with enough bit transitions.
+	 */
+	private static long mixGamma(long z)
+	{
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+
+		int n = Long.bitCount(z ^ (z >>> 1));
+		return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+}
@@ -0,0 +1,85 @@
+package nl.peterbloem.powerlaws;
+
+import static nl.peterbloem.powerlaws.PowerLaws.KS_CORRECT;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The kernels of Kernels, vectorized with the (incubating) Vector API. The
+ * elements that do not fill a whole vector are handled by the scalar code.
+ *
+ * This class is compiled only by the vector profile (active on JDK 17 and
+ * later) and loaded by Kernels when it is available at runtime.
+ *
+ * @author Peter
+ *
+ */
+class VectorKernels extends Kernels
+{
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+	// * The long species with the same number of lanes
+	private static final VectorSpecies<Long> LONGS =
+			VectorSpecies.of(long.class, DOUBLES.vectorShape());
+
+	@Override
+	public String name()
+	{
+		return "vector (" + DOUBLES.length() + " lanes)";
+	}
+
+	@Override
+	public void logs(double[] values, long[] counts, double[] target, int from, int to)
+	{
+		int lanes = DOUBLES.length();
+
+		int i = from;
+		for(; i + lanes <= to; i += lanes)
+		{
+			DoubleVector value = DoubleVector.fromArray(DOUBLES, values, i);
+			DoubleVector count = (DoubleVector) LongVector.fromArray(LONGS, counts, i)
+					.convert(VectorOperators.L2D, 0);
+
+			count.mul(value.lanewise(VectorOperators.LOG)).intoArray(target, i);
+		}
+
+		super.logs(values, counts, target, i, to);
+	}
+
+	@Override
+	protected double ks(double[] values, long[] tails, long n, int from, int to, double xMin, double exponent)
+	{
+		int lanes = DOUBLES.length();
+
+		double k = KS_CORRECT ? 1.0 : 0.0;
+
+		DoubleVector max = DoubleVector.broadcast(DOUBLES, Double.NEGATIVE_INFINITY);
+
+		int i = from;
+		for(; i + lanes <= to; i += lanes)
+		{
+			DoubleVector ratio = DoubleVector.fromArray(DOUBLES, values, i).div(xMin);
+			DoubleVector plCDF = ratio.lanewise(VectorOperators.POW, - exponent + 1).neg().add(1.0);
+
+			DoubleVector tail = (DoubleVector) LongVector.fromArray(LONGS, tails, i)
+					.convert(VectorOperators.L2D, 0);
+			DoubleVector next = (DoubleVector) LongVector.fromArray(LONGS, tails, i + 1)
+					.convert(VectorOperators.L2D, 0);
+
+			// * The first copy has n - tail points below it, the last n - next - 1.
+			//   These counts are integers, so they are exact as doubles.
+			DoubleVector first = tail.neg().add(n + k).div(n);
+			DoubleVector last = next.neg().add(n + k - 1.0).div(n);
+
+			DoubleVector diff = first.sub(plCDF).abs().max(last.sub(plCDF).abs());
+			max = max.max(diff);
+		}
+
+		double result = max.reduceLanes(VectorOperators.MAX);
+
+		return Math.max(result, super.ks(values, tails, n, i, to, xMin, exponent));
+	}
+}
@@ -0,0 +1,445 @@
+package nl.peterbloem.powerlaws;
+
+import static nl.peterbloem.util.Series.series;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import nl.peterbloem.util.SplitRandom;
+
+public class ContinuousPowerLawTest
+{
+
+	@Test
+	public void testFitXMin()
+	{
+		List<Double> data = new Continuous(2.0, 2.5).generate(1000);
+		PowerLaw.Fit<Double, Continuous> fit = Continuous.fit(data);
+		
+		for(double xMin : series(1.0, 0.25, 10.0))
+		{
+			double n = 0.0, sum = 0.0;
+			for(double datum : data)
+				if(datum >= xMin)
+				{
+					sum += Math.log(datum / xMin);
+					n++;
+				}
+			
+			assertEquals(1.0 + n / sum, fit.fit(xMin).exponent(), 1E-9);
+		}
+	}
+
+	@Test
+	public void testKSHistogram()
+	{
+		List<Double> data = new Continuous(2.0, 2.5).generate(500);
+		// * add some duplicates
+		data.addAll(data.subList(0, 100));
+		
+		Continuous model = new Continuous(3.0, 2.3);
+		
+		List<Double> tail = new ArrayList<Double>();
+		for(double datum : data)
+			if(datum >= model.xMin())
+				tail.add(datum);
+		Collections.sort(tail);
+		
+		double max = Double.NEGATIVE_INFINITY;
+		for(int i : series(tail.size()))
+		{
+			double dataCDF = (i + (PowerLaws.KS_CORRECT ? 1 : 0)) / (double) tail.size();
+			max = Math.max(max, Math.abs(dataCDF - model.cdf(tail.get(i))));
+		}
+		
+		Histogram histogram = new Histogram(data);
+		assertEquals(max, model.ksTest(histogram, histogram.tailStart(3.0)), 0.0);
+		assertEquals(max, model.ksTest(data), 0.0);
+	}
+
+	@Test
+	public void testSignificanceThreads()
+	{
+		List<Double> data = new Continuous(2.0, 2.5).generate(300);
+		Continuous model = Continuous.fit(data).fitSampled(20);
+		
+		ExecutorService single = Executors.newSingleThreadExecutor(), 
+		                multiple = Executors.newFixedThreadPool(4);
+		try 
+		{
+			double first = model.significance(data, 40, 20, single, new Random(7));
+			double second = model.significance(data, 40, 20, multiple, new Random(7));
+			
+			assertEquals(first, second, 0.0);
+		} finally 
+		{
+			single.shutdown();
+			multiple.shutdown();
+		}
+	}
+
+	@Test
+	public void testSignificanceBuffers()
+	{
+		// * Data with a head below xMin, so that trials resample it
+		List<Double> data = new Continuous(1.0, 2.5).generate(400, new Random(5));
+		Continuous model = new Continuous(2.0, 2.5);
+		Histogram histogram = new Histogram(data);
+		
+		int n = 200;
+		ExecutorService single = Executors.newSingleThreadExecutor(), 
+		                multiple = Executors.newFixedThreadPool(4);
+		try 
+		{
+			double first = model.significance(data, n, 10, single, new Random(9));
+			double second = model.significance(data, n, 10, multiple, new Random(9));
+			
+			assertEquals(first, second, 0.0);
+			
+			// * Each thread reuses its buffers. The result should match trials 
+			//   on freshly allocated datasets, drawn from the same streams.
+			double threshold = model.ksTest(histogram);
+			SplitRandom root = SplitRandom.of(new Random(9));
+			
+			int above = 0;
+			for(int i : series(n))
+			{
+				Histogram generated = model.generate(histogram, root.split());
+				if(Continuous.fit(generated).fitSampled(10).ksTest(generated) >= threshold)
+					above++;
+			}
+			
+			assertEquals(above / (double) n, second, 0.0);
+			assertTrue(second > 0.0 && second < 1.0);
+		} finally 
+		{
+			single.shutdown();
+			multiple.shutdown();
+		}
+	}
+	
+	@Test
+	public void testStaticUncertainties()
+	{
+		List<Double> data = new Continuous(2.0, 2.5).generate(300);
+		
+		Random original = PowerLaws.random;
+		try 
+		{
+			PowerLaws.random = new Random(11);
+			Uncertainties first = Continuous.uncertainties(data, 20);
+			
+			PowerLaws.random = new Random(11);
+			Uncertainties second = Continuous.fit(data).fit().uncertainties(data, 20);
+			
+			assertEquals(second.alpha(), first.alpha(), 0.0);
+			assertEquals(second.xMin(), first.xMin(), 0.0);
+			
+			List<Integer> discrete = new Discrete(2, 2.5).generate(300);
+			assertTrue(Discrete.uncertainties(discrete, 10).alpha() >= 0.0);
+			assertTrue(DiscreteApproximate.uncertainties(discrete, 10).alpha() >= 0.0);
+		} finally 
+		{
+			PowerLaws.random = original;
+		}
+	}
+	
+	@Test
+	public void testUncertaintiesThreads()
+	{
+		List<Double> data = new Continuous(2.0, 2.5).generate(300);
+		Continuous model = Continuous.fit(data).fit();
+		
+		Random original = PowerLaws.random;
+		ExecutorService single = Executors.newSingleThreadExecutor(), 
+		                multiple = Executors.newFixedThreadPool(4);
+		try 
+		{
+			PowerLaws.random = new Random(7);
+			Uncertainties first = model.uncertainties(data, 50, -1, single);
+			
+			PowerLaws.random = new Random(7);
+			Uncertainties second = model.uncertainties(data, 50, -1, multiple);
+			
+			assertEquals(first.alpha(), second.alpha(), 0.0);
+			assertEquals(first.xMin(), second.xMin(), 0.0);
+			assertEquals(first.nTail(), second.nTail(), 0.0);
+			
+			assertTrue(first.alpha() > 0.0 && first.alpha() < 1.0);
+		} finally 
+		{
+			PowerLaws.random = original;
+			single.shutdown();
+			multiple.shutdown();
+		}
+	}
+
+	@Test
+	public void testSequentialSignificance()
+	{
+		List<Double> data = new Continuous(1.0, 2.0).generate(300);
+		
+		// * A model that clearly doesn't fit, so the test should stop early
+		Continuous model = new Continuous(1.0, 4.0);
+		
+		Significance significance = model.sequentialSignificance(
+				data, 0.1, 0.99, 2500, 10, PowerLaws.executor, new Random(7));
+		
+		assertTrue(significance.trials() < 2500);
+		assertEquals(0, significance.trials() % AbstractPowerLaw.SEQUENTIAL_BATCH);
+		assertTrue(significance.upper() < 0.1);
+		assertEquals(significance.above() / (double) significance.trials(), significance.p(), 0.0);
+	}
+
+	@Test
+	public void testListener()
+	{
+		List<Double> data = new Continuous(2.0, 2.5).generate(300);
+		Continuous model = Continuous.fit(data).fit();
+		
+		// * The listener is called from several threads
+		final List<TrialEvent> events = Collections.synchronizedList(new ArrayList<TrialEvent>());
+		final List<Long> started = new ArrayList<Long>(), finished = new ArrayList<Long>();
+		final List<Integer> finishedTrials = new ArrayList<Integer>();
+		
+		PowerLaws.listener = new ProgressListener()
+		{
+			@Override
+			public void started(Job job, long run, int trials)
+			{
+				assertEquals(0, events.size());
+				started.add(run);
+			}
+
+			@Override
+			public void trial(TrialEvent event)
+			{
+				events.add(event);
+			}
+
+			@Override
+			public void finished(Job job, long run, int trials)
+			{
+				finished.add(run);
+				finishedTrials.add(trials);
+			}
+		};
+		
+		try 
+		{
+			double p = model.significance(data, 20, 10);
+			
+			assertEquals(20, events.size());
+			assertEquals(Collections.singletonList(20), finishedTrials);
+			assertEquals(started, finished);
+			
+			int above = 0;
+			boolean[] seen = new boolean[20], completed = new boolean[20];
+			for(TrialEvent event : events)
+			{
+				assertEquals(ProgressListener.Job.SIGNIFICANCE, event.job());
+				assertEquals((long) started.get(0), event.run());
+				assertEquals(20, event.total());
+				assertTrue(event.nanos() > 0);
+				assertTrue(event.rate() > 0.0);
+				
+				seen[event.index()] = true;
+				completed[event.completed() - 1] = true;
+				if(event.completed() == 20)
+					assertEquals(0, event.remainingNanos());
+				
+				if(event.distance() >= model.ksTest(data))
+					above++;
+			}
+			
+			for(int i : series(20))
+				assertTrue(seen[i] && completed[i]);
+			assertEquals(p, above / 20.0, 0.0);
+			
+			events.clear();
+			model.uncertainties(data, 10);
+			
+			assertEquals(10, events.size());
+			assertEquals(ProgressListener.Job.UNCERTAINTIES, events.get(0).job());
+			
+			// * Each run has its own id
+			assertEquals(2, started.size());
+			assertTrue(started.get(0) != started.get(1).longValue());
+			assertEquals((long) started.get(1), events.get(0).run());
+		} finally 
+		{
+			PowerLaws.listener = null;
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testSignificanceAsync()
+		throws Exception
+	{
+		List<Double> data = new Continuous(2.0, 2.5).generate(300);
+		Continuous model = Continuous.fit(data).fit();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try 
+		{
+			double expected = model.significance(data, 40, 10, executor, new Random(7));
+			
+			SignificanceFuture future = model.significanceAsync(
+					data, 40, 10, -1, TimeUnit.SECONDS, executor, new Random(7));
+			Significance significance = future.get(30, TimeUnit.SECONDS);
+			
+			assertTrue(future.isDone());
+			assertEquals(40, significance.trials());
+			assertEquals(expected, significance.p(), 0.0);
+			assertTrue(significance.lower() <= expected && expected <= significance.upper());
+			
+			// * A deadline stops the test early, with a partial result
+			future = model.significanceAsync(
+					data, 100000, -1, 100, TimeUnit.MILLISECONDS, executor, new Random(7));
+			significance = future.get(30, TimeUnit.SECONDS);
+			
+			assertFalse(future.isCancelled());
+			assertTrue(significance.trials() > 0);
+			assertTrue(significance.trials() < future.total());
+			
+			// * Cancelling keeps the trials completed so far
+			future = model.significanceAsync(
+					data, 100000, -1, -1, TimeUnit.SECONDS, executor, new Random(7));
+			while(future.trials() < 10)
+				Thread.sleep(1);
+			
+			assertTrue(future.cancel(false));
+			assertTrue(future.isCancelled());
+			assertTrue(future.isDone());
+			assertTrue(future.current().trials() >= 10);
+			
+			try 
+			{
+				future.get(30, TimeUnit.SECONDS);
+				fail();
+			} catch(CancellationException e) {}
+		} finally 
+		{
+			executor.shutdownNow();
+		}
+	}
+	
+	@Test(timeout = 60000)
+	public void testSignificanceRejected()
+		throws Exception
+	{
+		List<Double> data = new Continuous(2.0, 2.5).generate(300);
+		Continuous model = Continuous.fit(data).fit();
+		
+		// * A shut down executor rejects every trial
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		executor.shutdown();
+		
+		SignificanceFuture future = model.significanceAsync(
+				data, 40, 10, -1, TimeUnit.SECONDS, executor, new Random(7));
+		
+		assertTrue(future.isDone());
+		assertEquals(0, future.get(30, TimeUnit.SECONDS).trials());
+		
+		// * A bounded executor runs the trials it accepts
+		executor = new ThreadPoolExecutor(
+				1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(5));
+		try
+		{
+			future = model.significanceAsync(
+					data, 1000, 10, -1, TimeUnit.SECONDS, executor, new Random(7));
+			Significance significance = future.get(30, TimeUnit.SECONDS);
+			
+			assertFalse(future.isCancelled());
+			assertTrue(significance.trials() > 0);
+			assertTrue(significance.trials() < future.total());
+		} finally 
+		{
+			executor.shutdownNow();
+		}
+	}
+	
+	@Test
+	public void testGeneratePrimitive()
+	{
+		Continuous model = new Continuous(2.0, 2.5);
+		
+		double[] batch = new double[1000];
+		model.generate(batch, new Random(3));
+		
+		Random random = new Random(3);
+		for(int i = 0; i < batch.length; i++)
+			assertEquals(model.generate(random), batch[i], 1E-12);
+		
+		double[] sequential = model.doubles(100000, new Random(5)).toArray();
+		double[] parallel = model.doubles(100000, new Random(5)).parallel().toArray();
+		
+		assertArrayEquals(sequential, parallel, 0.0);
+	}
+	
+	@Test
+	public void testFitAdaptive()
+	{
+		Random random = new Random(23);
+		
+		// * A lognormal body with a power law tail
+		List<Double> data = new ArrayList<Double>();
+		for(int i = 0; i < 5000; i++)
+			data.add(random.nextDouble() < 0.6 ? 
+					Math.exp(random.nextGaussian() * 0.7 + 0.5) : 
+					new Continuous(5.0, 2.5).generate(random));
+		
+		PowerLaw.Fit<Double, Continuous> fit = Continuous.fit(data);
+		
+		Continuous full = fit.fit();
+		assertEquals(5000, fit.evaluated());
+		
+		Continuous adaptive = fit.fitAdaptive();
+		assertTrue(fit.evaluated() < 200);
+		
+		Continuous sampled = fit.fitSampled(100);
+		
+		assertTrue(adaptive.ksTest(data) <= sampled.ksTest(data));
+		assertEquals(full.ksTest(data), adaptive.ksTest(data), 2E-3);
+	}
+	
+	@Test
+	public void testGenerateSorted()
+	{
+		Random random = new Random(37);
+		Continuous model = new Continuous(2.0, 2.5);
+		
+		Histogram generated = model.generateHistogram(100000, random);
+		assertEquals(100000, generated.total());
+		
+		// * The KS distance to the model should be below the critical value 
+		//   at the 1% level (1.63 / sqrt(n)) 
+		assertTrue(model.ksTest(generated) < 1.63 / Math.sqrt(100000));
+		assertEquals(2.5, Continuous.fit(generated).fit(2.0).exponent(), 0.02);
+		
+		// * Generating a dataset like the data merges the resampled head with 
+		//   the tail
+		List<Double> data = new ArrayList<Double>();
+		for(int i = 0; i < 1000; i++)
+			data.add(random.nextDouble() * 2.0);
+		data.addAll(model.generate(3000, random));
+		
+		Histogram observed = new Histogram(data);
+		Histogram like = model.generate(observed, random);
+		
+		assertEquals(4000, like.total());
+		assertEquals(0.25, 1.0 - like.tailSize(like.tailStart(2.0)) / 4000.0, 0.03);
+	}
+
+}
@@ -3,8 +3,12 @@ package nl.peterbloem.powerlaws;
 import static nl.peterbloem.util.Series.series;
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -26,6 +30,118 @@ public class DiscretePowerLawTest
 	}
 
 	
+	@Test
+	public void testFitXMin()
+	{
+		List<Integer> data = new Discrete(2, 2.7).generate(2000);
+		PowerLaw.Fit<Integer, Discrete> fit = Discrete.fit(data);
+		
+		for(int xMin : series(1, 10))
+		{
+			double alpha = fit.fit(xMin).exponent();
+			
+			// * The exponent should maximize the likelihood
+			double ll = logLikelihood(data, alpha, xMin);
+			assertTrue(ll >= logLikelihood(data, alpha + 1E-4, xMin));
+			assertTrue(ll >= logLikelihood(data, alpha - 1E-4, xMin));
+		}
+	}
+	
+	@Test
+	public void testFitSampled()
+	{
+		Random random = new Random(3);
+		for(Discrete model : Arrays.asList(new Discrete(1, 2.5), new Discrete(4, 2.1), new Discrete(2, 3.2)))
+		{
+			List<Integer> data = model.generate(3000, random);
+			PowerLaw.Fit<Integer, Discrete> fit = Discrete.fit(data);
+			Histogram histogram = new Histogram(data);
+			
+			for(int samples : Arrays.asList(-1, 10))
+			{
+				int step = samples == -1 ? 1 : Math.max(1, histogram.size() / samples);
+				
+				// * Exhaustive search, preferring the lower xMin on ties
+				Discrete expected = null;
+				double min = Double.POSITIVE_INFINITY;
+				for(int i = 0; i < histogram.size(); i += step)
+				{
+					Discrete candidate = fit.fit((int) histogram.value(i));
+					double distance = candidate.ksTest(histogram, i);
+					if(distance < min)
+					{
+						min = distance;
+						expected = candidate;
+					}
+				}
+				
+				Discrete swept = fit.fitSampled(samples);
+				assertEquals(expected.xMin(), swept.xMin());
+				assertEquals(expected.exponent(), swept.exponent(), 1E-8);
+				assertEquals(min, swept.ksTest(histogram), 1E-8);
+			}
+		}
+	}
+	
+	@Test(timeout = 10000)
+	public void testFitZero()
+	{
+		// * Degree data often contains zeros, for which the likelihood is 
+		//   not defined
+		List<Integer> data = new ArrayList<Integer>(new Discrete(1, 2.5).generate(1000, new Random(7)));
+		for(int i : series(50))
+			data.add(0);
+		
+		PowerLaw.Fit<Integer, Discrete> fit = Discrete.fit(data);
+		
+		assertTrue(Double.isNaN(fit.fit(0).exponent()));
+		assertTrue(fit.fit().xMin() >= 1);
+		assertTrue(fit.fitAdaptive().xMin() >= 1);
+	}
+	
+	private static double logLikelihood(List<Integer> data, double alpha, int xMin)
+	{
+		double sum = 0.0, n = 0.0;
+		for(int datum : data)
+			if(datum >= xMin)
+			{
+				sum += Math.log(datum);
+				n++;
+			}
+		
+		return - n * Math.log(Functions.zeta(alpha, xMin)) - alpha * sum;
+	}
+	
+	@Test
+	public void testKS()
+	{
+		List<Integer> data = new Discrete(3, 2.2).generate(1000);
+		Discrete model = new Discrete(2, 2.3);
+		
+		int n = 0, xMax = Integer.MIN_VALUE;
+		for(int datum : data)
+			if(datum >= model.xMin())
+			{
+				n++;
+				xMax = Math.max(xMax, datum);
+			}
+		
+		// * Brute force: loop over all integers in the range
+		double max = Double.NEGATIVE_INFINITY, plCDF = 0.0;
+		for(int x : series(model.xMin(), xMax + 1))
+		{
+			int count = 0;
+			for(int datum : data)
+				if(datum >= model.xMin() && datum <= x)
+					count++;
+			
+			plCDF += model.p(x);
+			max = Math.max(max, Math.abs(count / (double) n - plCDF));
+		}
+		
+		assertEquals(max, model.ksTest(data), 1E-12);
+	}
+	
 	@Test
 	public void testCount()
 	{
@@ -39,4 +155,173 @@ public class DiscretePowerLawTest
 		}
 			
 	}
+	
+	@Test
+	public void testFrequencyTable()
+	{
+		List<Integer> data = new Discrete(5, 2.5).generate(2000, new Random(5));
+		
+		// * A frequency table, in no particular order
+		Map<Integer, Long> table = new HashMap<Integer, Long>();
+		for(int datum : data)
+			table.put(datum, table.containsKey(datum) ? table.get(datum) + 1 : 1L);
+		
+		int[] values = new int[table.size()];
+		long[] counts = new long[table.size()];
+		int i = 0;
+		for(Map.Entry<Integer, Long> entry : table.entrySet())
+		{
+			values[i] = entry.getKey();
+			counts[i++] = entry.getValue();
+		}
+		
+		Histogram histogram = new Histogram(values, counts);
+		assertEquals(data.size(), histogram.total());
+		
+		Discrete expected = Discrete.fit(data).fit(), 
+		         fit = Discrete.fit(histogram).fit();
+		
+		assertEquals(expected.xMin(), fit.xMin());
+		assertEquals(expected.exponent(), fit.exponent(), 0.0);
+		assertEquals(expected.ksTest(data), fit.ksTest(histogram), 0.0);
+		
+		double p = fit.significance(histogram, 20);
+		assertTrue(p >= 0.0 && p <= 1.0);
+		
+		Uncertainties uncertainties = fit.uncertainties(histogram, 10);
+		assertTrue(uncertainties.alpha() > 0.0 && uncertainties.alpha() < 1.0);
+	}
+	
+	@Test
+	public void testGenerateHistogram()
+	{
+		Random random = new Random(7);
+		
+		// * A billion points, with few distinct values
+		long n = 1000000000L;
+		Histogram observed = new Histogram(new int[]{1, 2, 3, 10}, new long[]{n / 2, n / 4, n / 8, n / 8});
+		
+		for(PowerLaw<Integer> model : Arrays.<PowerLaw<Integer>>asList(
+				new Discrete(10, 2.5), new DiscreteApproximate(10, 2.5)))
+		{
+			Histogram generated = model.generate(observed, random);
+			
+			assertEquals(observed.total(), generated.total());
+			
+			// * Roughly seven eighths should come from the head
+			int from = generated.tailStart(10);
+			assertEquals(7.0 / 8.0, 1.0 - generated.tailSize(from) / (double) n, 1E-3);
+			
+			// * The tail should be distributed as when the points are generated
+			//   one by one
+			List<Integer> individual = model.generate(200000, random);
+			assertEquals(
+					Discrete.fit(individual).fit(10).exponent(), 
+					Discrete.fit(generated).fit(10).exponent(), 0.02);
+		}
+	}
+	
+	@Test(timeout = 10000)
+	public void testGenerateHistogramFitted()
+	{
+		Random random = new Random(13);
+		
+		List<Integer> data = new DiscreteApproximate(5, 2.5).generate(10000, random);
+		
+		// * The continuous xMin of the fit is 4.5, so xMin() is 4
+		DiscreteApproximate fitted = DiscreteApproximate.fit(data).fit(5);
+		assertEquals(4, (int) fitted.xMin());
+		
+		// * Generated as counts, not point by point
+		for(long n : new long[]{50000000L, 5000000000L})
+		{
+			Histogram generated = fitted.generateHistogram(n, random);
+			
+			assertEquals(n, generated.total());
+			assertEquals(5.0, generated.value(0), 0.0);
+			assertEquals(fitted.p(5), generated.count(0) / (double) n, 1E-3);
+		}
+	}
+	
+	@Test
+	public void testGeneratePrimitive()
+	{
+		Discrete discrete = new Discrete(3, 2.5);
+		DiscreteApproximate approximate = new DiscreteApproximate(3, 2.5);
+		
+		int[] ints = new int[1000], approximateInts = new int[1000];
+		discrete.generate(ints, 0, ints.length, new Random(3));
+		approximate.generate(approximateInts, 0, ints.length, new Random(3));
+		
+		long[] longs = new long[1000];
+		discrete.generate(longs, 0, longs.length, new Random(3));
+		
+		double[] doubles = new double[1000];
+		approximate.generate(doubles, new Random(3));
+		
+		// * The same values as when generated one by one
+		Random random = new Random(3), approximateRandom = new Random(3);
+		for(int i = 0; i < ints.length; i++)
+		{
+			int expected = discrete.generate(random);
+			assertEquals(expected, ints[i]);
+			assertEquals(expected, longs[i]);
+			
+			expected = approximate.generate(approximateRandom);
+			assertEquals(expected, approximateInts[i]);
+			assertEquals(expected, doubles[i], 0.0);
+		}
+		
+		// * Streams give the same values in parallel
+		assertArrayEquals(
+				discrete.ints(100000, new Random(5)).toArray(), 
+				discrete.ints(100000, new Random(5)).parallel().toArray());
+		assertArrayEquals(
+				approximate.ints(100000, new Random(5)).toArray(), 
+				approximate.ints(100000, new Random(5)).parallel().toArray());
+	}
+	
+	@Test
+	public void testRejectionSampler()
+	{
+		Random random = new Random(31);
+		int n = 500000;
+		
+		for(Discrete model : Arrays.asList(new Discrete(1, 2.5), new Discrete(5, 1.7)))
+		{
+			int[] generated = new int[n];
+			model.generate(generated, 0, n, random);
+			
+			// * The streams use the same sampler, with a generator per element
+			int[] streamed = model.ints(n, random).parallel().toArray();
+			
+			for(int[] values : Arrays.asList(generated, streamed))
+			{
+				Map<Integer, Integer> frequencies = new HashMap<Integer, Integer>();
+				for(int value : values)
+				{
+					assertTrue(value >= model.xMin());
+					frequencies.put(value, frequencies.containsKey(value) ? frequencies.get(value) + 1 : 1);
+				}
+				
+				// * Pearson's chi-squared statistic over the first 30 values, 
+				//   which has 30 degrees of freedom. Its 0.999 quantile is about
+				//   59.7.
+				double chi = 0.0;
+				for(int x = model.xMin(); x < model.xMin() + 30; x++)
+				{
+					double expected = n * model.p(x);
+					double observed = frequencies.containsKey(x) ? frequencies.get(x) : 0;
+					chi += (observed - expected) * (observed - expected) / expected;
+				}
+				
+				assertTrue(chi < 59.7);
+			}
+			
+			assertArrayEquals(
+					model.ints(1000, new Random(7)).asDoubleStream().toArray(),
+					model.doubles(1000, new Random(7)).toArray(), 0.0);
+		}
+	}
+
 }
@@ -0,0 +1,82 @@
+package nl.peterbloem.powerlaws;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ExternalFitTest
+{
+
+	@Test
+	public void testFit()
+	{
+		Random random = new Random(5);
+		Continuous model = new Continuous(1.0, 2.5);
+		
+		// * Rounded, so that there are duplicates
+		List<Double> data = new ArrayList<Double>();
+		for(int i = 0; i < 300000; i++)
+			data.add(Math.round(model.generate(random) * 100.0) / 100.0);
+		
+		// * With the smallest budget, this creates more than FAN_IN runs, and 
+		//   several passes to evaluate the candidates
+		ExternalFit external = new ExternalFit(1 << 16, null);
+		try
+		{
+			for(double datum : data)
+				external.add(datum);
+			
+			assertEquals(data.size(), external.count());
+			
+			Continuous expected = Continuous.fit(data).fitSampled(3000), 
+			           fit = external.fitSampled(3000);
+			
+			assertEquals(expected.xMin(), fit.xMin(), 0.0);
+			assertEquals(expected.exponent(), fit.exponent(), 1E-9);
+			
+			assertEquals(expected.ksTest(data), external.ksTest(fit), 1E-9);
+			assertEquals(expected.exponent(), external.fit(expected.xMin()).exponent(), 1E-9);
+		} finally
+		{
+			external.close();
+		}
+	}
+	
+	@Test
+	public void testBudget()
+	{
+		Random random = new Random(7);
+		Continuous model = new Continuous(1.0, 2.5);
+		
+		List<Double> data = new ArrayList<Double>();
+		for(int i = 0; i < 100000; i++)
+			data.add(model.generate(random));
+		
+		// * With the minimum budget, each run holds 4096 values, and the runs
+		//   are merged a few at a time, over several levels
+		ExternalFit external = new ExternalFit(1 << 16, null);
+		try
+		{
+			for(double datum : data)
+				external.add(datum);
+			
+			Continuous expected = Continuous.fit(data).fitSampled(1000), 
+			           fit = external.fitSampled(1000);
+			
+			assertEquals(expected.xMin(), fit.xMin(), 0.0);
+			assertEquals(expected.exponent(), fit.exponent(), 1E-9);
+			
+			// * Adding more values after a fit still works
+			external.add(2.0);
+			assertEquals(100001, external.count());
+			assertNotNull(external.fit(2.0));
+		} finally
+		{
+			external.close();
+		}
+	}
+}
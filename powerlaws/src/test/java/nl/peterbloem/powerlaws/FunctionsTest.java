@@ -1,8 +1,12 @@
 package nl.peterbloem.powerlaws;
 
 import static nl.peterbloem.powerlaws.Functions.zeta;
+import static nl.peterbloem.powerlaws.Functions.zetaDerivative;
+import static nl.peterbloem.util.Series.series;
 import static org.junit.Assert.*;
 
+import java.util.Random;
+
 import org.junit.Test;
 
 public class FunctionsTest
@@ -54,6 +58,27 @@ public class FunctionsTest
 		return series;
 	}
 	
+	@Test
+	public void testZetaDerivative()
+	{
+		double h = 1E-6;
+		for(double s : new double[]{1.5, 2.0, 2.5, 3.456})
+			for(double q : new double[]{1.0, 2.0, 5.0, 20.0, 1000.0})
+			{
+				double expected = (zeta(s + h, q) - zeta(s - h, q)) / (2.0 * h);
+				assertEquals(expected, zetaDerivative(s, q), Math.abs(expected) * 1E-6);
+			}
+	}
+	
+	@Test
+	public void testNormalQuantile()
+	{
+		assertEquals(0.0, Functions.normalQuantile(0.5), 1E-9);
+		assertEquals(1.95996398454005, Functions.normalQuantile(0.975), 1E-8);
+		assertEquals(-2.32634787404084, Functions.normalQuantile(0.01), 1E-8);
+		assertEquals(3.71901648545568, Functions.normalQuantile(0.9999), 1E-7);
+	}
+	
 	@Test
 	public void testZetaSingle()
 	{
@@ -65,5 +90,37 @@ public class FunctionsTest
 		assertEquals(1.34148725725091, zeta(2.5), 10E-12);
 		assertEquals(1.18338365211190, zeta(3.1), 10E-12);
 	}
+	
+	@Test
+	public void testBinomial()
+	{
+		Random random = new Random(3);
+		
+		long[] ns = {5, 1000, 1000, 1000000000L, 1000000000L};
+		double[] ps = {0.3, 0.5, 0.995, 1E-7, 0.3};
+		
+		int draws = 4000;
+		for(int i : series(ns.length))
+		{
+			long n = ns[i];
+			double p = ps[i];
+			
+			double sum = 0.0, sumSquares = 0.0;
+			for(int j : series(draws))
+			{
+				long x = Functions.binomial(n, p, random);
+				assertTrue(x >= 0 && x <= n);
+				
+				sum += x;
+				sumSquares += x * (double) x;
+			}
+			
+			double mean = sum / draws, variance = sumSquares / draws - mean * mean;
+			double expectedVariance = n * p * (1.0 - p);
+			
+			assertEquals(n * p, mean, 5.0 * Math.sqrt(expectedVariance / draws));
+			assertEquals(expectedVariance, variance, 0.15 * expectedVariance);
+		}
+	}
 
 }
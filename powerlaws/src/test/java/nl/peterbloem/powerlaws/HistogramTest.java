@@ -0,0 +1,160 @@
+package nl.peterbloem.powerlaws;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HistogramTest
+{
+
+	@Test
+	public void testMergeContinuous()
+	{
+		Random random = new Random(11);
+		List<Double> data = new Continuous(2.0, 2.5).generate(3000, random);
+		
+		Histogram first = new Histogram(data.subList(0, 1000)),
+		          second = new Histogram(data.subList(1000, 1800)),
+		          third = new Histogram(data.subList(1800, 3000));
+		
+		Histogram left = first.merge(second).merge(third), 
+		          right = first.merge(second.merge(third));
+		
+		Continuous expected = Continuous.fit(data).fit();
+		
+		for(Histogram merged : Arrays.asList(left, right))
+		{
+			assertEquals(data.size(), merged.total());
+			
+			Continuous fit = Continuous.fit(merged).fit();
+			assertEquals(expected.xMin(), fit.xMin(), 0.0);
+			assertEquals(expected.exponent(), fit.exponent(), 0.0);
+			assertEquals(expected.ksTest(data), fit.ksTest(merged), 0.0);
+		}
+	}
+	
+	@Test
+	public void testIntoTarget()
+	{
+		Random random = new Random(17);
+		Continuous model = new Continuous(2.0, 2.5);
+		
+		// * A target that has room for more values than it receives
+		Histogram target = new Histogram(model.generate(5000, random));
+		
+		for(int size : Arrays.asList(800, 20))
+		{
+			Histogram first = new Histogram(model.generate(size, random)), 
+			          second = new Histogram(model.generate(size, random));
+			
+			assertSame(target, first.merge(second, target));
+			assertSameData(first.merge(second), target);
+			
+			long[] buffer = new long[first.size()];
+			assertSame(target, first.resample(size, 0, first.size(), new Random(size), buffer, target));
+			assertSameData(first.resample(size, 0, first.size(), new Random(size)), target);
+		}
+	}
+	
+	private static void assertSameData(Histogram expected, Histogram actual)
+	{
+		assertEquals(expected.size(), actual.size());
+		for(int i = 0; i < expected.size(); i++)
+			assertEquals(expected.value(i), actual.value(i), 0.0);
+		for(int i = 0; i <= expected.size(); i++)
+		{
+			assertEquals(expected.tailSize(i), actual.tailSize(i));
+			assertEquals(expected.tailLogSum(i), actual.tailLogSum(i), 0.0);
+		}
+		
+		assertEquals(
+				Continuous.fit(expected).fit().exponent(), 
+				Continuous.fit(actual).fit().exponent(), 0.0);
+	}
+	
+	@Test
+	public void testMergeDiscrete()
+	{
+		Random random = new Random(13);
+		List<Integer> data = new Discrete(3, 2.2).generate(2000, random);
+		
+		List<Histogram> shards = new ArrayList<Histogram>();
+		for(int i = 0; i < data.size(); i += 300)
+			shards.add(new Histogram(data.subList(i, Math.min(i + 300, data.size()))));
+		
+		Histogram merged = Histogram.merge(shards), 
+		          full = new Histogram(data);
+		
+		assertEquals(full.size(), merged.size());
+		for(int i = 0; i <= full.size(); i++)
+		{
+			assertEquals(full.tailSize(i), merged.tailSize(i));
+			assertEquals(full.tailLogSum(i), merged.tailLogSum(i), 0.0);
+		}
+		
+		Discrete expected = Discrete.fit(data).fitSampled(50);
+		Discrete fit = Discrete.fit(merged).fitSampled(50);
+		
+		assertEquals(expected.xMin(), fit.xMin());
+		assertEquals(expected.exponent(), fit.exponent(), 0.0);
+		assertEquals(expected.ksTest(data), fit.ksTest(merged), 0.0);
+	}
+	
+	@Test
+	public void testSerialization()
+		throws IOException, ClassNotFoundException
+	{
+		Histogram histogram = new Histogram(new double[]{3.0, 1.0, 2.0, 3.0, 1.0});
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(histogram);
+		out.close();
+		
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		Histogram copy = (Histogram) in.readObject();
+		
+		assertEquals(3, copy.size());
+		assertEquals(5, copy.total());
+		assertEquals(2, copy.count(2));
+		assertEquals(histogram.tailLogSum(1), copy.tailLogSum(1), 0.0);
+	}
+	
+	@Test
+	public void testResample()
+	{
+		Random random = new Random(19);
+		Histogram data = new Histogram(new int[]{1, 2, 3, 5, 8}, new long[]{40, 30, 20, 0, 10});
+		
+		// * Each count in a sample of the same size is binomially distributed,
+		//   with the original count as its mean
+		double[] sums = new double[4];
+		int samples = 20000;
+		for(int s = 0; s < samples; s++)
+		{
+			Histogram sample = data.resample(data.total(), random);
+			assertEquals(data.total(), sample.total());
+			
+			for(int i = 0; i < sample.size(); i++)
+			{
+				int index = data.tailStart(sample.value(i));
+				assertEquals(data.value(index), sample.value(i), 0.0);
+				sums[index] += sample.count(i);
+			}
+		}
+		
+		for(int i = 0; i < data.size(); i++)
+			assertEquals(data.count(i), sums[i] / samples, 0.1);
+	}
+
+}
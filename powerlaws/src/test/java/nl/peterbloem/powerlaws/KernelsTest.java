@@ -0,0 +1,62 @@
+package nl.peterbloem.powerlaws;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class KernelsTest
+{
+	/**
+	 * Compares the kernels in use (vectorized, if available) with the scalar
+	 * ones, within the tolerance documented in Kernels.
+	 */
+	@Test
+	public void testLogs()
+	{
+		Random random = new Random(13);
+
+		// * Odd sizes, so that part of the data is not a whole vector
+		for(int size : new int[]{0, 1, 7, 1001})
+		{
+			double[] values = new double[size];
+			long[] counts = new long[size];
+			for(int i = 0; i < size; i++)
+			{
+				values[i] = new Continuous(1.0, 2.5).generate(random);
+				counts[i] = 1 + random.nextInt(1000);
+			}
+
+			double[] scalar = new double[size], used = new double[size];
+			Kernels.SCALAR.logs(values, counts, scalar, 0, size);
+			Kernels.INSTANCE.logs(values, counts, used, 0, size);
+
+			for(int i = 0; i < size; i++)
+				assertEquals(scalar[i], used[i], 2.0 * Math.ulp(scalar[i]));
+		}
+	}
+
+	@Test
+	public void testKS()
+	{
+		Random random = new Random(17);
+
+		for(int size : new int[]{1, 7, 1001, 10000})
+		{
+			double[] data = new double[size];
+			for(int i = 0; i < size; i++)
+				data[i] = Math.round(new Continuous(1.0, 2.5).generate(random) * 10.0) / 10.0;
+
+			Histogram histogram = new Histogram(data);
+
+			for(int from : new int[]{0, histogram.size() / 3})
+			{
+				double scalar = Kernels.SCALAR.ks(histogram.values(), histogram.tails(), from, histogram.size(), 1.0, 2.4);
+				double used = Kernels.INSTANCE.ks(histogram.values(), histogram.tails(), from, histogram.size(), 1.0, 2.4);
+
+				assertEquals(scalar, used, 2.0 * Math.ulp(1.0));
+			}
+		}
+	}
+}
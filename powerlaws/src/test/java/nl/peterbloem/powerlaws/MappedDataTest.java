@@ -0,0 +1,125 @@
+package nl.peterbloem.powerlaws;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MappedDataTest
+{
+
+	@Test
+	public void testDoubles()
+		throws IOException
+	{
+		List<Double> data = new Continuous(2.0, 2.5).generate(1000, new Random(3));
+		
+		ByteBuffer buffer = ByteBuffer.allocate(8 * data.size()).order(ByteOrder.LITTLE_ENDIAN);
+		for(double datum : data)
+			buffer.putDouble(datum);
+		
+		MappedData mapped = new MappedData(write(buffer), MappedData.Type.DOUBLE);
+		
+		assertEquals(data.size(), mapped.size());
+		assertEquals(data.get(17), mapped.get(17), 0.0);
+		
+		Histogram histogram = mapped.histogram();
+		Continuous expected = Continuous.fit(data).fit(), 
+		           fit = Continuous.fit(histogram).fit();
+		
+		assertEquals(expected.xMin(), fit.xMin(), 0.0);
+		assertEquals(expected.exponent(), fit.exponent(), 0.0);
+		assertEquals(expected.ksTest(data), fit.ksTest(histogram), 0.0);
+	}
+	
+	@Test
+	public void testInts()
+		throws IOException
+	{
+		List<Integer> data = new Discrete(3, 2.2).generate(5000, new Random(5));
+		
+		ByteBuffer ints = ByteBuffer.allocate(4 * data.size()).order(ByteOrder.LITTLE_ENDIAN), 
+		           longs = ByteBuffer.allocate(8 * data.size()).order(ByteOrder.LITTLE_ENDIAN);
+		for(int datum : data)
+		{
+			ints.putInt(datum);
+			longs.putLong(datum);
+		}
+		
+		Histogram expected = new Histogram(data);
+		
+		for(Histogram histogram : new Histogram[]{
+				new MappedData(write(ints), MappedData.Type.INT).histogram(), 
+				new MappedData(write(longs), MappedData.Type.LONG).histogram()})
+		{
+			assertEquals(expected.size(), histogram.size());
+			for(int i = 0; i <= expected.size(); i++)
+			{
+				assertEquals(expected.tailSize(i), histogram.tailSize(i));
+				assertEquals(expected.tailLogSum(i), histogram.tailLogSum(i), 0.0);
+			}
+		}
+	}
+	
+	@Test
+	public void testLongs()
+		throws IOException
+	{
+		// * Longs that are exact as doubles, but far apart for the hash table
+		long big = 1L << 60;
+		ByteBuffer buffer = ByteBuffer.allocate(8 * 3).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putLong(big).putLong(big + 1024).putLong(big);
+		
+		MappedData mapped = new MappedData(write(buffer), MappedData.Type.LONG);
+		assertEquals(big + 1024, mapped.getLong(1));
+		
+		Histogram histogram = mapped.histogram();
+		assertEquals(2, histogram.size());
+		assertEquals(2, histogram.count(0));
+		assertEquals((double) (big + 1024), histogram.value(1), 0.0);
+		
+		// * 2^53 + 1 cannot be represented as a double
+		buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putLong((1L << 53) + 1);
+		
+		try
+		{
+			new MappedData(write(buffer), MappedData.Type.LONG).histogram();
+			fail();
+		} catch(IllegalStateException e)
+		{
+		}
+	}
+	
+	@Test(expected = IOException.class)
+	public void testLength()
+		throws IOException
+	{
+		new MappedData(write(ByteBuffer.allocate(6)), MappedData.Type.INT);
+	}
+	
+	private static File write(ByteBuffer buffer)
+		throws IOException
+	{
+		File file = File.createTempFile("powerlaws", ".bin");
+		file.deleteOnExit();
+		
+		FileOutputStream out = new FileOutputStream(file);
+		try 
+		{
+			out.write(buffer.array());
+		} finally 
+		{
+			out.close();
+		}
+		
+		return file;
+	}
+}
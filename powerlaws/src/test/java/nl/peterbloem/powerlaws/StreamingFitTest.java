@@ -0,0 +1,61 @@
+package nl.peterbloem.powerlaws;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import nl.peterbloem.util.QuantileSketch;
+
+import org.junit.Test;
+
+public class StreamingFitTest
+{
+
+	@Test
+	public void testSketch()
+	{
+		Random random = new Random(5);
+		QuantileSketch sketch = new QuantileSketch(200);
+		
+		for(int i = 0; i < 100000; i++)
+			sketch.add(random.nextDouble());
+		
+		assertEquals(100000, sketch.count());
+		assertTrue(sketch.retained() < 2000);
+		
+		long total = 0;
+		for(long weight : sketch.weights())
+			total += weight;
+		assertEquals(100000, total);
+		
+		for(double x = 0.1; x < 1.0; x += 0.1)
+			assertEquals(x, sketch.rank(x), 0.02);
+	}
+	
+	@Test
+	public void testFit()
+	{
+		Random random = new Random(3);
+		Continuous model = new Continuous(5.0, 2.5);
+		
+		List<Double> data = new ArrayList<Double>();
+		for(int i = 0; i < 100000; i++)
+			data.add(random.nextBoolean() ? 1.0 + 4.0 * random.nextDouble() : model.generate(random));
+		
+		// * Fit two halves of the stream separately, and merge
+		StreamingFit first = new StreamingFit(), second = new StreamingFit();
+		for(int i = 0; i < data.size(); i++)
+			(i % 2 == 0 ? first : second).add(data.get(i));
+		
+		first.merge(second);
+		assertEquals(data.size(), first.count());
+		
+		Continuous fit = first.fit();
+		
+		assertEquals(5.0, fit.xMin(), 0.5);
+		assertEquals(2.5, fit.exponent(), 0.05);
+		assertEquals(fit.ksTest(data), first.ksTest(fit), 0.01);
+	}
+}
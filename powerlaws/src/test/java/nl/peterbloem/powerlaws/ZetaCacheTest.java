@@ -0,0 +1,41 @@
+package nl.peterbloem.powerlaws;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ZetaCacheTest
+{
+
+	@Test
+	public void testCache()
+	{
+		ZetaCache cache = new ZetaCache(64, ZetaCache.Eviction.LRU);
+		
+		assertEquals(Functions.zetaUncached(2.5, 3.0), cache.zeta(2.5, 3.0), 0.0);
+		assertEquals(Functions.zetaUncached(2.5, 3.0), cache.zeta(2.5, 3.0), 0.0);
+		
+		assertEquals(1, cache.hits());
+		assertEquals(1, cache.misses());
+		
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.hits());
+	}
+	
+	@Test
+	public void testBounded()
+	{
+		for(ZetaCache.Eviction eviction : ZetaCache.Eviction.values())
+		{
+			ZetaCache cache = new ZetaCache(64, eviction);
+			
+			for(int q = 1; q <= 1000; q++)
+				cache.zeta(2.0, q);
+			
+			assertTrue(cache.size() <= 64);
+			assertEquals(1000, cache.misses());
+		}
+	}
+
+}
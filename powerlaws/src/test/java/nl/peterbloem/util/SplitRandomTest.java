@@ -0,0 +1,61 @@
+package nl.peterbloem.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+public class SplitRandomTest
+{
+
+	@Test
+	public void testSplittable()
+	{
+		SplitRandom random = new SplitRandom(41);
+		SplittableRandom expected = new SplittableRandom(41);
+
+		// * The same values as SplittableRandom, also for the children
+		for(int i = 0; i < 3; i++)
+		{
+			assertEquals(expected.nextLong(), random.nextLong());
+			assertEquals(expected.nextInt(), random.nextInt());
+			assertEquals(expected.nextInt(1000), random.nextInt(1000));
+			assertEquals(expected.nextInt(1 << 10), random.nextInt(1 << 10));
+			assertEquals(expected.nextDouble(), random.nextDouble(), 0.0);
+			assertEquals(expected.nextBoolean(), random.nextBoolean());
+
+			random = random.split();
+			expected = expected.split();
+		}
+	}
+
+	@Test
+	public void testSerialization()
+		throws IOException, ClassNotFoundException
+	{
+		SplitRandom random = new SplitRandom(41);
+		random.nextLong();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(random);
+		out.close();
+
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		SplitRandom copy = (SplitRandom) in.readObject();
+
+		// * The copy continues where the original was, and serializing did not
+		//   change the original
+		for(int i = 0; i < 100; i++)
+			assertEquals(random.nextLong(), copy.nextLong());
+
+		assertArrayEquals(
+				random.split().doubles(100).toArray(), copy.split().doubles(100).toArray(), 0.0);
+	}
+}